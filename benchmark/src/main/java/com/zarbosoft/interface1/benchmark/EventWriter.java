@@ -0,0 +1,116 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.events.*;
+import com.zarbosoft.rendaw.common.Pair;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts an object to the events the grammar and decoder read.
+ */
+public class EventWriter implements Walk.ObjectVisitor {
+	public final List<Pair<? extends InterfaceEvent, Object>> events = new ArrayList<>();
+
+	private void add(final InterfaceEvent event) {
+		events.add(new Pair<>(event, null));
+	}
+
+	@Override
+	public void visitString(final String value) {
+		add(new InterfacePrimitiveEvent(value));
+	}
+
+	@Override
+	public void visitInteger(final Integer value) {
+		add(new InterfacePrimitiveEvent(value.toString()));
+	}
+
+	@Override
+	public void visitDouble(final Double value) {
+		add(new InterfacePrimitiveEvent(value.toString()));
+	}
+
+	@Override
+	public void visitBoolean(final Boolean value) {
+		add(new InterfacePrimitiveEvent(value.toString()));
+	}
+
+	@Override
+	public void visitEnum(final Enum value) {
+		add(new InterfacePrimitiveEvent(Walk.decideEnumName(value)));
+	}
+
+	@Override
+	public void visitListStart(final List value) {
+		add(new InterfaceArrayOpenEvent());
+	}
+
+	@Override
+	public void visitListEnd(final List value) {
+		add(new InterfaceArrayCloseEvent());
+	}
+
+	@Override
+	public void visitSetStart(final Set value) {
+		add(new InterfaceArrayOpenEvent());
+	}
+
+	@Override
+	public void visitSetEnd(final Set value) {
+		add(new InterfaceArrayCloseEvent());
+	}
+
+	@Override
+	public void visitMapStart(final Map value) {
+		add(new InterfaceObjectOpenEvent());
+	}
+
+	@Override
+	public void visitKeyBegin(final String key) {
+		add(new InterfaceKeyEvent(key));
+	}
+
+	@Override
+	public void visitKeyEnd(final String key) {
+	}
+
+	@Override
+	public void visitMapEnd(final Map value) {
+		add(new InterfaceObjectCloseEvent());
+	}
+
+	@Override
+	public boolean visitAbstractBegin(final Class<?> klass, final Object value) {
+		add(new InterfaceTypeEvent(Walk.ClassInfo.get(value.getClass()).name.toLowerCase()));
+		return true;
+	}
+
+	@Override
+	public void visitAbstractEnd(final Class<?> klass, final Object value) {
+	}
+
+	@Override
+	public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+		add(new InterfaceObjectOpenEvent());
+		return true;
+	}
+
+	@Override
+	public void visitFieldBegin(final Field field, final Object value) {
+		add(new InterfaceKeyEvent(Walk.decideName(field)));
+	}
+
+	@Override
+	public void visitFieldEnd(final Field field, final Object value) {
+	}
+
+	@Override
+	public void visitConcreteEnd(final Class<?> klass, final Object value) {
+		add(new InterfaceObjectCloseEvent());
+	}
+}
@@ -0,0 +1,131 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.events.InterfaceEvent;
+import com.zarbosoft.rendaw.common.Pair;
+import org.reflections.Reflections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates benchmark documents.  Values come from a fixed seed so every run walks and parses the same data.
+ */
+public class Fixtures {
+	public static final Reflections reflections = new Reflections("com.zarbosoft.interface1.benchmark");
+
+	public static Walk.TypeInfo root(final String model) {
+		try {
+			return Walk.TypeInfo.of(Models.Roots.class.getField(model));
+		} catch (final NoSuchFieldException e) {
+			throw new IllegalArgumentException(String.format("Unknown model [%s].", model));
+		}
+	}
+
+	/**
+	 * @param model A field of {@link Models.Roots}.
+	 * @param size  The number of elements, or the depth for the deep model.
+	 * @return
+	 */
+	public static Object build(final String model, final int size) {
+		final Random random = new Random(size);
+		switch (model) {
+			case "flat": {
+				final List<Models.Flat> out = new ArrayList<>();
+				for (int i = 0; i < size; ++i)
+					out.add(flat(random));
+				return out;
+			}
+			case "wide": {
+				final List<Models.Wide> out = new ArrayList<>();
+				for (int i = 0; i < size; ++i)
+					out.add(wide(random));
+				return out;
+			}
+			case "deep":
+				return deep(random, size);
+			case "polymorphic": {
+				final List<Models.Animal> out = new ArrayList<>();
+				for (int i = 0; i < size; ++i)
+					out.add(animal(random));
+				return out;
+			}
+			default:
+				throw new IllegalArgumentException(String.format("Unknown model [%s].", model));
+		}
+	}
+
+	public static List<Pair<? extends InterfaceEvent, Object>> events(final String model, final int size) {
+		final EventWriter writer = new EventWriter();
+		Walk.walk(root(model), build(model, size), writer);
+		return writer.events;
+	}
+
+	private static Models.Flat flat(final Random random) {
+		final Models.Flat out = new Models.Flat();
+		out.name = "name" + random.nextInt(1000);
+		out.count = random.nextInt();
+		out.ratio = random.nextDouble();
+		out.enabled = random.nextBoolean();
+		out.water = Models.Water.values()[random.nextInt(Models.Water.values().length)];
+		return out;
+	}
+
+	private static Models.Wide wide(final Random random) {
+		final Models.Wide out = new Models.Wide();
+		for (final Walk.FieldInfo field : Walk.ClassInfo.get(Models.Wide.class).fields) {
+			if (field.field.getType() == int.class)
+				field.set(out, random.nextInt());
+			else
+				field.set(out, "value" + random.nextInt(1000));
+		}
+		return out;
+	}
+
+	/**
+	 * A chain with a few leaves at each level.
+	 */
+	private static Models.Deep deep(final Random random, final int depth) {
+		final Models.Deep out = new Models.Deep();
+		out.value = random.nextInt();
+		if (depth > 1) {
+			out.children.add(deep(random, depth - 1));
+			for (int i = 0; i < 2; ++i) {
+				final Models.Deep leaf = new Models.Deep();
+				leaf.value = random.nextInt();
+				out.children.add(leaf);
+			}
+		}
+		return out;
+	}
+
+	private static Models.Animal animal(final Random random) {
+		switch (random.nextInt(4)) {
+			case 0: {
+				final Models.Dog out = new Models.Dog();
+				out.legs = random.nextInt(5);
+				out.name = "dog" + random.nextInt(100);
+				return out;
+			}
+			case 1: {
+				final Models.Cat out = new Models.Cat();
+				out.indoor = random.nextBoolean();
+				out.name = "cat" + random.nextInt(100);
+				return out;
+			}
+			case 2: {
+				final Models.Bird out = new Models.Bird();
+				out.wingspan = random.nextDouble();
+				out.name = "bird" + random.nextInt(100);
+				return out;
+			}
+			default: {
+				final Models.Fish out = new Models.Fish();
+				out.water = Models.Water.values()[random.nextInt(Models.Water.values().length)];
+				out.name = "fish" + random.nextInt(100);
+				return out;
+			}
+		}
+	}
+}
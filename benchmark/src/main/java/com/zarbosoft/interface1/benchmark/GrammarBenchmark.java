@@ -0,0 +1,40 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Events;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.events.ReadEventGrammar;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grammar construction.  Cold builds a new grammar every time; warm gets it from the shared cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GrammarBenchmark {
+	@Param({"flat", "wide", "deep", "polymorphic"})
+	public String model;
+
+	private Walk.TypeInfo root;
+
+	@Setup
+	public void setup() {
+		root = Fixtures.root(model);
+		Events.grammars.get(Fixtures.reflections, root);
+	}
+
+	@Benchmark
+	public Object cold() {
+		return ReadEventGrammar.buildGrammar(Fixtures.reflections, root);
+	}
+
+	@Benchmark
+	public Object warm() {
+		return Events.grammars.get(Fixtures.reflections, root);
+	}
+}
@@ -0,0 +1,397 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Models for the benchmarks.  Each root field of {@link Roots} is one benchmark model.
+ */
+public class Models {
+	public static class Roots {
+		@Configuration
+		public List<Flat> flat;
+
+		@Configuration
+		public List<Wide> wide;
+
+		@Configuration
+		public Deep deep;
+
+		@Configuration
+		public List<Animal> polymorphic;
+	}
+
+	@Configuration(name = "flat")
+	public static class Flat {
+		@Configuration
+		public String name;
+
+		@Configuration
+		public int count;
+
+		@Configuration
+		public double ratio;
+
+		@Configuration
+		public boolean enabled;
+
+		@Configuration
+		public Water water;
+	}
+
+	/**
+	 * 100 fields, alternating int and String.
+	 */
+	@Configuration(name = "wide")
+	public static class Wide {
+		@Configuration
+		public int f000;
+
+		@Configuration
+		public String f001;
+
+		@Configuration
+		public int f002;
+
+		@Configuration
+		public String f003;
+
+		@Configuration
+		public int f004;
+
+		@Configuration
+		public String f005;
+
+		@Configuration
+		public int f006;
+
+		@Configuration
+		public String f007;
+
+		@Configuration
+		public int f008;
+
+		@Configuration
+		public String f009;
+
+		@Configuration
+		public int f010;
+
+		@Configuration
+		public String f011;
+
+		@Configuration
+		public int f012;
+
+		@Configuration
+		public String f013;
+
+		@Configuration
+		public int f014;
+
+		@Configuration
+		public String f015;
+
+		@Configuration
+		public int f016;
+
+		@Configuration
+		public String f017;
+
+		@Configuration
+		public int f018;
+
+		@Configuration
+		public String f019;
+
+		@Configuration
+		public int f020;
+
+		@Configuration
+		public String f021;
+
+		@Configuration
+		public int f022;
+
+		@Configuration
+		public String f023;
+
+		@Configuration
+		public int f024;
+
+		@Configuration
+		public String f025;
+
+		@Configuration
+		public int f026;
+
+		@Configuration
+		public String f027;
+
+		@Configuration
+		public int f028;
+
+		@Configuration
+		public String f029;
+
+		@Configuration
+		public int f030;
+
+		@Configuration
+		public String f031;
+
+		@Configuration
+		public int f032;
+
+		@Configuration
+		public String f033;
+
+		@Configuration
+		public int f034;
+
+		@Configuration
+		public String f035;
+
+		@Configuration
+		public int f036;
+
+		@Configuration
+		public String f037;
+
+		@Configuration
+		public int f038;
+
+		@Configuration
+		public String f039;
+
+		@Configuration
+		public int f040;
+
+		@Configuration
+		public String f041;
+
+		@Configuration
+		public int f042;
+
+		@Configuration
+		public String f043;
+
+		@Configuration
+		public int f044;
+
+		@Configuration
+		public String f045;
+
+		@Configuration
+		public int f046;
+
+		@Configuration
+		public String f047;
+
+		@Configuration
+		public int f048;
+
+		@Configuration
+		public String f049;
+
+		@Configuration
+		public int f050;
+
+		@Configuration
+		public String f051;
+
+		@Configuration
+		public int f052;
+
+		@Configuration
+		public String f053;
+
+		@Configuration
+		public int f054;
+
+		@Configuration
+		public String f055;
+
+		@Configuration
+		public int f056;
+
+		@Configuration
+		public String f057;
+
+		@Configuration
+		public int f058;
+
+		@Configuration
+		public String f059;
+
+		@Configuration
+		public int f060;
+
+		@Configuration
+		public String f061;
+
+		@Configuration
+		public int f062;
+
+		@Configuration
+		public String f063;
+
+		@Configuration
+		public int f064;
+
+		@Configuration
+		public String f065;
+
+		@Configuration
+		public int f066;
+
+		@Configuration
+		public String f067;
+
+		@Configuration
+		public int f068;
+
+		@Configuration
+		public String f069;
+
+		@Configuration
+		public int f070;
+
+		@Configuration
+		public String f071;
+
+		@Configuration
+		public int f072;
+
+		@Configuration
+		public String f073;
+
+		@Configuration
+		public int f074;
+
+		@Configuration
+		public String f075;
+
+		@Configuration
+		public int f076;
+
+		@Configuration
+		public String f077;
+
+		@Configuration
+		public int f078;
+
+		@Configuration
+		public String f079;
+
+		@Configuration
+		public int f080;
+
+		@Configuration
+		public String f081;
+
+		@Configuration
+		public int f082;
+
+		@Configuration
+		public String f083;
+
+		@Configuration
+		public int f084;
+
+		@Configuration
+		public String f085;
+
+		@Configuration
+		public int f086;
+
+		@Configuration
+		public String f087;
+
+		@Configuration
+		public int f088;
+
+		@Configuration
+		public String f089;
+
+		@Configuration
+		public int f090;
+
+		@Configuration
+		public String f091;
+
+		@Configuration
+		public int f092;
+
+		@Configuration
+		public String f093;
+
+		@Configuration
+		public int f094;
+
+		@Configuration
+		public String f095;
+
+		@Configuration
+		public int f096;
+
+		@Configuration
+		public String f097;
+
+		@Configuration
+		public int f098;
+
+		@Configuration
+		public String f099;
+	}
+
+	@Configuration(name = "deep")
+	public static class Deep {
+		@Configuration
+		public int value;
+
+		@Configuration
+		public List<Deep> children = new ArrayList<>();
+	}
+
+	public enum Water {
+		@Configuration
+		FRESH,
+		@Configuration
+		SALT,
+		@Configuration
+		BRACKISH
+	}
+
+	@Configuration
+	public abstract static class Animal {
+		@Configuration
+		public String name;
+	}
+
+	@Configuration(name = "dog")
+	public static class Dog extends Animal {
+		@Configuration
+		public int legs;
+	}
+
+	@Configuration(name = "cat")
+	public static class Cat extends Animal {
+		@Configuration
+		public boolean indoor;
+	}
+
+	@Configuration(name = "bird")
+	public static class Bird extends Animal {
+		@Configuration
+		public double wingspan;
+	}
+
+	@Configuration(name = "fish")
+	public static class Fish extends Animal {
+		@Configuration
+		public Water water;
+	}
+}
@@ -0,0 +1,168 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Walk;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks generated object graphs with the reflective and compiled walkers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjectWalkBenchmark {
+	@Param({"flat", "wide", "deep", "polymorphic"})
+	public String model;
+
+	@Param({"1000"})
+	public int size;
+
+	private Walk.TypeInfo root;
+	private Object value;
+
+	@Setup
+	public void setup() {
+		root = Fixtures.root(model);
+		value = Fixtures.build(model, size);
+	}
+
+	@Benchmark
+	public void walk(final Blackhole blackhole) {
+		Walk.walk(root, value, new Consumer(blackhole));
+	}
+
+	@Benchmark
+	public void walkCompiled(final Blackhole blackhole) {
+		Walk.walkCompiled(root, value, new Consumer(blackhole));
+	}
+
+	/**
+	 * Passes everything to the blackhole.  Doesn't want field values so primitive fields aren't boxed.
+	 */
+	private static class Consumer implements Walk.ObjectVisitor {
+		private final Blackhole blackhole;
+
+		private Consumer(final Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public boolean wantsFieldValues() {
+			return false;
+		}
+
+		@Override
+		public void visitString(final String value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitInteger(final Integer value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitDouble(final Double value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitBoolean(final Boolean value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitInt(final int value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitDouble(final double value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitBoolean(final boolean value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitEnum(final Enum value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitListStart(final List value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitListEnd(final List value) {
+		}
+
+		@Override
+		public void visitSetStart(final Set value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitSetEnd(final Set value) {
+		}
+
+		@Override
+		public void visitMapStart(final Map value) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void visitKeyBegin(final String key) {
+			blackhole.consume(key);
+		}
+
+		@Override
+		public void visitKeyEnd(final String key) {
+		}
+
+		@Override
+		public void visitMapEnd(final Map value) {
+		}
+
+		@Override
+		public boolean visitAbstractBegin(final Class<?> klass, final Object value) {
+			blackhole.consume(klass);
+			return true;
+		}
+
+		@Override
+		public void visitAbstractEnd(final Class<?> klass, final Object value) {
+		}
+
+		@Override
+		public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+			blackhole.consume(klass);
+			return true;
+		}
+
+		@Override
+		public void visitFieldBegin(final Field field, final Object value) {
+			blackhole.consume(field);
+		}
+
+		@Override
+		public void visitFieldEnd(final Field field, final Object value) {
+		}
+
+		@Override
+		public void visitConcreteEnd(final Class<?> klass, final Object value) {
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Events;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.events.InterfaceEvent;
+import com.zarbosoft.rendaw.common.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses pregenerated event lists with each engine.  Grammars and decoders are built during setup so only parsing is
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+	@Param({"flat", "wide", "deep", "polymorphic"})
+	public String model;
+
+	@Param({"10", "100", "1000"})
+	public int size;
+
+	@Param({"GRAMMAR", "DECODER"})
+	public Events.Engine engine;
+
+	private Walk.TypeInfo root;
+	private List<Pair<? extends InterfaceEvent, Object>> events;
+
+	@Setup
+	public void setup() {
+		root = Fixtures.root(model);
+		events = Fixtures.events(model, size);
+		Events.parse(engine, Fixtures.reflections, root, events.stream());
+	}
+
+	@Benchmark
+	public Object parse() {
+		return Events.parse(engine, Fixtures.reflections, root, events.stream());
+	}
+}
@@ -0,0 +1,32 @@
+package com.zarbosoft.interface1.benchmark;
+
+import com.zarbosoft.interface1.Walk;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks the type graph of each model, as done when building grammars and decoders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeWalkBenchmark {
+	@Param({"flat", "wide", "deep", "polymorphic"})
+	public String model;
+
+	private Walk.TypeInfo root;
+
+	@Setup
+	public void setup() {
+		root = Fixtures.root(model);
+	}
+
+	@Benchmark
+	public Object walk() {
+		return Walk.walk(Fixtures.reflections, root, new Walk.DefaultVisitor<Object>());
+	}
+}
@@ -0,0 +1,195 @@
+package com.zarbosoft.interface1.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes an index of every {@code @Configuration} type in the compilation to
+ * {@code META-INF/interface1/types}, so subtypes can be found at runtime without scanning the classpath.  See
+ * {@code com.zarbosoft.interface1.TypeIndex} for the format.
+ * <p>
+ * Incremental compilations only see some of the types, so records from an existing index in the output are kept
+ * for types that still exist and are still annotated.
+ */
+@SupportedAnnotationTypes(IndexProcessor.CONFIGURATION)
+public class IndexProcessor extends AbstractProcessor {
+	static final String CONFIGURATION = "com.zarbosoft.interface1.Configuration";
+	static final String RESOURCE = "META-INF/interface1/types";
+
+	private final Map<String, TypeElement> found = new TreeMap<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+		for (final TypeElement annotation : annotations) {
+			for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind().isClass() || element.getKind().isInterface()) {
+					final TypeElement type = (TypeElement) element;
+					found.put(binaryName(type), type);
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !found.isEmpty())
+			write();
+		return false;
+	}
+
+	private void write() {
+		final Map<String, String> records = previous();
+		try {
+			for (final Map.Entry<String, TypeElement> entry : found.entrySet()) {
+				final StringWriter record = new StringWriter();
+				writeType(record, entry.getKey(), entry.getValue());
+				records.put(entry.getKey(), record.toString());
+			}
+			final FileObject file =
+					processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE);
+			try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+				for (final String record : records.values())
+					writer.write(record);
+			}
+		} catch (final IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					String.format("Failed to write interface type index: %s", e)
+			);
+		}
+	}
+
+	/**
+	 * @return The records in the existing index, by binary name, for types not in this compilation that are still
+	 * annotated.
+	 */
+	private Map<String, String> previous() {
+		final Map<String, String> out = new TreeMap<>();
+		final FileObject file;
+		try {
+			file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE);
+		} catch (final IOException | IllegalArgumentException e) {
+			return out;
+		}
+		try (
+				BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(),
+						StandardCharsets.UTF_8
+				))
+		) {
+			String type = null;
+			StringBuilder record = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				if (line.startsWith("type\t")) {
+					keep(out, type, record);
+					type = line.split("\t", -1)[1];
+					record = new StringBuilder();
+				}
+				if (record != null)
+					record.append(line).append('\n');
+			}
+			keep(out, type, record);
+		} catch (final IOException e) {
+			// No index from a previous compilation
+		}
+		return out;
+	}
+
+	private void keep(final Map<String, String> out, final String type, final StringBuilder record) {
+		if (type == null || found.containsKey(type))
+			return;
+		final TypeElement element = processingEnv.getElementUtils().getTypeElement(type.replace('$', '.'));
+		if (element == null || configuration(element) == null)
+			return;
+		out.put(type, record.toString());
+	}
+
+	private void writeType(final Writer writer, final String binaryName, final TypeElement type) throws IOException {
+		final AnnotationMirror annotation = configuration(type);
+		final String name = stringValue(annotation, "name");
+		final String kind;
+		if (type.getKind() == ElementKind.ENUM)
+			kind = "enum";
+		else if (type.getKind().isInterface() || type.getModifiers().contains(Modifier.ABSTRACT))
+			kind = "abstract";
+		else
+			kind = "concrete";
+		line(writer, "type", binaryName, name.isEmpty() ? binaryName : name, kind);
+		final Set<String> supers = new TreeSet<>();
+		collectSupers(type, supers);
+		for (final String superName : supers)
+			line(writer, "super", superName);
+	}
+
+	private void collectSupers(final TypeElement type, final Set<String> out) {
+		final List<TypeMirror> direct = new ArrayList<>(type.getInterfaces());
+		direct.add(type.getSuperclass());
+		for (final TypeMirror mirror : direct) {
+			if (mirror.getKind() != TypeKind.DECLARED)
+				continue;
+			final TypeElement superType = (TypeElement) ((DeclaredType) mirror).asElement();
+			if (configuration(superType) != null)
+				out.add(binaryName(superType));
+			collectSupers(superType, out);
+		}
+	}
+
+	private String binaryName(final TypeElement type) {
+		return processingEnv.getElementUtils().getBinaryName(type).toString();
+	}
+
+	private static AnnotationMirror configuration(final Element element) {
+		for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(CONFIGURATION))
+				return mirror;
+		}
+		return null;
+	}
+
+	private AnnotationValue value(final AnnotationMirror annotation, final String name) {
+		for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+				.getElementUtils()
+				.getElementValuesWithDefaults(annotation)
+				.entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name))
+				return entry.getValue();
+		}
+		throw new AssertionError(String.format("Missing annotation element [%s].", name));
+	}
+
+	private String stringValue(final AnnotationMirror annotation, final String name) {
+		return (String) value(annotation, name).getValue();
+	}
+
+	private static void line(final Writer writer, final String... parts) throws IOException {
+		for (int i = 0; i < parts.length; ++i) {
+			if (i > 0)
+				writer.write('\t');
+			writer.write(escape(parts[i]));
+		}
+		writer.write('\n');
+	}
+
+	private static String escape(final String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,86 @@
+package com.zarbosoft.interface1.processor;
+
+import com.zarbosoft.interface1.TypeIndex;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexProcessorTest {
+	private static void source(final Path root, final String name, final String text) throws IOException {
+		Files.write(root.resolve(name + ".java"), text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Compile sources with the processor into the output directory, with the output directory on the classpath.
+	 */
+	private static void compile(final Path out, final Path... sources) throws IOException {
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			final List<String> options = new ArrayList<>();
+			options.add("-d");
+			options.add(out.toString());
+			options.add("-classpath");
+			options.add(System.getProperty("java.class.path") + File.pathSeparator + out);
+			final JavaCompiler.CompilationTask task = compiler.getTask(null,
+					files,
+					null,
+					options,
+					null,
+					files.getJavaFileObjects(Arrays.stream(sources).map(Path::toFile).toArray(File[]::new))
+			);
+			task.setProcessors(Collections.singletonList(new IndexProcessor()));
+			assertTrue(task.call());
+		}
+	}
+
+	private static List<String> subTypes(final Path out, final String name) throws Exception {
+		try (URLClassLoader loader = new URLClassLoader(new URL[] {out.toUri().toURL()},
+				IndexProcessorTest.class.getClassLoader()
+		)) {
+			final List<Class<?>> found = TypeIndex.subTypesOf(Class.forName(name, false, loader));
+			if (found == null)
+				return null;
+			return found.stream().map(Class::getName).sorted().collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testIndexAndIncrementalCompile() throws Exception {
+		final Path src = Files.createTempDirectory("interface-processor-src");
+		final Path out = Files.createTempDirectory("interface-processor-out");
+		source(src,
+				"Base",
+				"@com.zarbosoft.interface1.Configuration public abstract class Base {}"
+		);
+		source(src, "A", "@com.zarbosoft.interface1.Configuration public class A extends Base {}");
+		source(src, "B", "@com.zarbosoft.interface1.Configuration public class B extends Base {}");
+		source(src, "Plain", "public class Plain {}");
+		compile(out, src.resolve("Base.java"), src.resolve("A.java"), src.resolve("B.java"), src.resolve("Plain.java"));
+		assertEquals(Arrays.asList("A", "B"), subTypes(out, "Base"));
+		assertNull(subTypes(out, "Plain"));
+
+		// Only the new type is in the second compilation
+		source(src, "C", "@com.zarbosoft.interface1.Configuration public class C extends A {}");
+		compile(out, src.resolve("C.java"));
+		assertEquals(Arrays.asList("A", "B", "C"), subTypes(out, "Base"));
+		assertEquals(Arrays.asList("C"), subTypes(out, "A"));
+	}
+}
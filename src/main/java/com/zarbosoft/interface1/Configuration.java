@@ -45,4 +45,13 @@ public @interface Configuration {
 	 * @return
 	 */
 	Class<?> typeless() default Void.class;
+
+	/**
+	 * For List, Set and Map fields.
+	 * When deserializing with {@link com.zarbosoft.interface1.events.ReadEventDecoder}, keep the field's events and
+	 * build the collection the first time it's used.  Errors in the collection are reported on first use.
+	 *
+	 * @return
+	 */
+	boolean lazy() default false;
 }
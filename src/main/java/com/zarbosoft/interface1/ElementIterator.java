@@ -0,0 +1,186 @@
+package com.zarbosoft.interface1;
+
+import com.zarbosoft.interface1.events.InterfaceEvent;
+import com.zarbosoft.interface1.events.InterfaceEventCursor;
+import com.zarbosoft.interface1.events.InterfaceEventFlyweights;
+import com.zarbosoft.interface1.events.InterfaceEventKind;
+import com.zarbosoft.interface1.events.InterfaceKeyEvent;
+import com.zarbosoft.interface1.events.InvalidElement;
+import com.zarbosoft.interface1.events.InvalidEventStream;
+import com.zarbosoft.interface1.events.ReadEventDecoder;
+import com.zarbosoft.interface1.path.InterfaceRootPath;
+import com.zarbosoft.rendaw.common.DeadCode;
+import com.zarbosoft.rendaw.common.Pair;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Decodes the elements of a document whose root is an array or an object (a map) one at a time, returning each
+ * element as soon as its last event is read.  Only the element being decoded is held in memory, so documents with
+ * more elements than fit in the heap can be processed.
+ * <p>
+ * Events are read as elements are requested.  Errors within an element are thrown as {@link InvalidElement}.  Not
+ * thread safe.
+ *
+ * @param <T> The element type.
+ */
+public class ElementIterator<T> implements Iterator<T> {
+	private final ReadEventDecoder decoder;
+	private final Iterator<Pair<? extends InterfaceEvent, Object>> pairs;
+	private final InterfaceEventCursor cursor;
+	private final InterfaceEventFlyweights flyweights;
+
+	private InterfaceEvent event;
+	private Object position;
+
+	/**
+	 * Null until the root is opened, then whether the root is an array.
+	 */
+	private Boolean array = null;
+	private boolean closed = false;
+	private int index = -1;
+	private String key;
+	private String nextKey;
+	private T next;
+	private boolean ready = false;
+
+	/**
+	 * @param decoder A decoder for the element type.
+	 * @param data    Events and their positions.
+	 */
+	public ElementIterator(final ReadEventDecoder decoder, final Iterator<Pair<? extends InterfaceEvent, Object>> data) {
+		this.decoder = decoder;
+		this.pairs = data;
+		this.cursor = null;
+		this.flyweights = null;
+	}
+
+	/**
+	 * @param decoder A decoder for the element type.
+	 * @param cursor
+	 */
+	public ElementIterator(final ReadEventDecoder decoder, final InterfaceEventCursor cursor) {
+		this.decoder = decoder;
+		this.pairs = null;
+		this.cursor = cursor;
+		this.flyweights = new InterfaceEventFlyweights(cursor);
+	}
+
+	/**
+	 * @return The index of the last element returned, counting from 0.
+	 */
+	public int index() {
+		return index;
+	}
+
+	/**
+	 * @return The key of the last element returned if the root is an object, otherwise null.
+	 */
+	public String key() {
+		return key;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!ready)
+			advance();
+		return ready;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		ready = false;
+		index += 1;
+		key = nextKey;
+		return next;
+	}
+
+	private boolean read() {
+		if (pairs != null) {
+			if (!pairs.hasNext())
+				return false;
+			final Pair<? extends InterfaceEvent, Object> pair = pairs.next();
+			event = pair.first;
+			position = pair.second;
+			return true;
+		}
+		if (!cursor.next())
+			return false;
+		event = flyweights.current();
+		position = cursor.position();
+		return true;
+	}
+
+	/**
+	 * Read events until the next element is complete or the root closes.
+	 */
+	private void advance() {
+		if (closed)
+			return;
+		if (array == null) {
+			if (!read()) {
+				closed = true;
+				return;
+			}
+			switch (InterfaceEventKind.of(event)) {
+				case ARRAY_OPEN:
+					array = true;
+					break;
+				case OBJECT_OPEN:
+					array = false;
+					break;
+				default:
+					throw new InvalidEventStream(new InterfaceRootPath(""),
+							position,
+							String.format("Expected array or object but got [%s].", event)
+					);
+			}
+		}
+		if (!read())
+			throw new InvalidEventStream(new InterfaceRootPath(""), null, "Unexpected end of document.");
+		final InterfaceEventKind kind = InterfaceEventKind.of(event);
+		if (kind == (array ? InterfaceEventKind.ARRAY_CLOSE : InterfaceEventKind.OBJECT_CLOSE)) {
+			closed = true;
+			if (read())
+				throw new InvalidEventStream(new InterfaceRootPath(""),
+						position,
+						String.format("Expected end of document but got [%s].", event)
+				);
+			return;
+		}
+		final String location;
+		if (array) {
+			nextKey = null;
+			location = "/" + (index + 1);
+		} else {
+			if (kind != InterfaceEventKind.KEY)
+				throw new InvalidEventStream(new InterfaceRootPath(""),
+						position,
+						String.format("Expected key but got [%s].", event)
+				);
+			nextKey = ((InterfaceKeyEvent) event).value;
+			location = "/" + nextKey;
+			if (!read())
+				throw new InvalidEventStream(new InterfaceRootPath(""), null, "Unexpected end of document.");
+		}
+		final ReadEventDecoder.Incremental<T> element = decoder.incremental(location);
+		try {
+			while (true) {
+				element.feed(event, position);
+				if (element.complete())
+					break;
+				if (!read()) {
+					element.finish();
+					throw new DeadCode();
+				}
+			}
+			next = element.finish();
+		} catch (final InvalidEventStream e) {
+			throw new InvalidElement(index + 1, nextKey, e);
+		}
+		ready = true;
+	}
+}
@@ -1,24 +1,61 @@
 package com.zarbosoft.interface1;
 
 import com.zarbosoft.interface1.events.InterfaceEvent;
+import com.zarbosoft.interface1.events.InterfaceEventCursor;
+import com.zarbosoft.interface1.events.ParseDiagnostics;
+import com.zarbosoft.interface1.events.ReadEventDecoder;
 import com.zarbosoft.interface1.events.ReadEventGrammar;
+import com.zarbosoft.interface1.jfr.Flight;
+import com.zarbosoft.interface1.path.InterfacePathProjection;
+import com.zarbosoft.interface1.path.InterfacePathTracker;
 import com.zarbosoft.pidgoon.events.Grammar;
 import com.zarbosoft.pidgoon.events.Parse;
 import com.zarbosoft.rendaw.common.Pair;
 import org.reflections.Reflections;
 
-import java.lang.reflect.Type;
-import java.util.HashSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Helper methods to use with pidgoon Grammars.
+ * Methods for parsing models from events, with pidgoon grammars or with {@link ReadEventDecoder}.
  */
 public class Events {
 
+	/**
+	 * How to turn events into objects.
+	 */
+	public enum Engine {
+		/**
+		 * A pidgoon grammar from {@link ReadEventGrammar}.
+		 */
+		GRAMMAR,
+		/**
+		 * A {@link ReadEventDecoder}, which needs at most one event of lookahead and doesn't track parallel
+		 * alternatives.
+		 */
+		DECODER
+	}
+
+	/**
+	 * Grammars used by {@link #parse(Reflections, Walk.TypeInfo, Stream)}.  Invalidate entries here if the types
+	 * visible to a Reflections instance change.
+	 */
+	public static final GrammarCache<Grammar> grammars = new GrammarCache<>(64, ReadEventGrammar::buildGrammar);
+
+	/**
+	 * Decoders used by {@link #parse(Engine, Reflections, Walk.TypeInfo, Stream)}.
+	 */
+	public static final GrammarCache<ReadEventDecoder> decoders = new GrammarCache<>(64, ReadEventDecoder::new);
+
 	/**
 	 * Parse an object from a stream of common InterfaceEvents. Can be used to easily create type deserializers given
 	 * a parser that emits the basic common events.
+	 * <p>
+	 * Uses a pidgoon grammar, which matches each key against every field of the class.  For classes with many
+	 * fields use {@link #parse(Engine, Reflections, Walk.TypeInfo, Stream)} with {@link Engine#DECODER}, which looks
+	 * keys up in a hash table.
 	 *
 	 * @param reflections
 	 * @param typeInfo    The type to deserialize.
@@ -31,8 +68,250 @@ public class Events {
 			final Walk.TypeInfo typeInfo,
 			final Stream<Pair<? extends InterfaceEvent, Object>> data
 	) {
-		final HashSet<Type> seen = new HashSet<>();
-		final Grammar grammar = ReadEventGrammar.buildGrammar(reflections, typeInfo);
+		final Grammar grammar = grammars.get(reflections, typeInfo);
+		final Flight.Parse flight = Flight.available ? Flight.recorder.parse("grammar", typeInfo) : null;
+		if (flight == null)
+			return parse(grammar, data);
+		final InterfacePathTracker path = new InterfacePathTracker("");
+		final T out;
+		try {
+			out = parse(grammar, data.peek(pair -> {
+				flight.event();
+				path.push(pair.first);
+			}));
+		} catch (final RuntimeException e) {
+			flight.fail(path.snapshot());
+			throw e;
+		}
+		flight.finish();
+		return out;
+	}
+
+	/**
+	 * Parse an object with an instrumented grammar, recording branch and match counts in the diagnostics.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param data        The stream of events.
+	 * @param diagnostics
+	 * @param <T>         typeInfo
+	 * @return The deserialized object.
+	 */
+	public static <T> T parse(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data,
+			final ParseDiagnostics diagnostics
+	) {
+		return diagnostics.parse(reflections, typeInfo, data);
+	}
+
+	/**
+	 * Parse an object using a grammar from {@link ReadEventGrammar#buildGrammar(Reflections, Walk.TypeInfo)}.  The
+	 * grammar isn't modified by parsing so it can be reused across parses and threads.
+	 * <p>
+	 * The root type isn't known here so parses through this method aren't recorded as flight events.
+	 *
+	 * @param grammar
+	 * @param data    The stream of events.
+	 * @param <T>     The root type of the grammar.
+	 * @return The deserialized object.
+	 */
+	public static <T> T parse(
+			final Grammar grammar, final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
 		return new Parse<T>().grammar(grammar).errorHistory(5).parse(data.map(pair -> pair));
 	}
+
+	/**
+	 * Parse an object from a stream of common InterfaceEvents with the selected engine.
+	 *
+	 * @param engine
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param data        The stream of events.
+	 * @param <T>         typeInfo
+	 * @return The deserialized object.
+	 */
+	public static <T> T parse(
+			final Engine engine,
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		switch (engine) {
+			case GRAMMAR:
+				return parse(reflections, typeInfo, data);
+			case DECODER:
+				return parse(decoders.get(reflections, typeInfo), data);
+			default:
+				throw new AssertionError();
+		}
+	}
+
+	/**
+	 * Parse an object using a prebuilt decoder.
+	 *
+	 * @param decoder
+	 * @param data    The stream of events.
+	 * @param <T>     The root type of the decoder.
+	 * @return The deserialized object.
+	 */
+	public static <T> T parse(
+			final ReadEventDecoder decoder, final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		return decoder.parse(data);
+	}
+
+	/**
+	 * Parse an object from a cursor with a cached {@link ReadEventDecoder}.  Use this rather than the Stream
+	 * overloads when the producer can reuse its event state.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param cursor
+	 * @param <T>         typeInfo
+	 * @return The deserialized object.
+	 */
+	public static <T> T parse(
+			final Reflections reflections, final Walk.TypeInfo typeInfo, final InterfaceEventCursor cursor
+	) {
+		return parse(decoders.get(reflections, typeInfo), cursor);
+	}
+
+	/**
+	 * Parse an object from a cursor using a prebuilt decoder.
+	 *
+	 * @param decoder
+	 * @param cursor
+	 * @param <T>     The root type of the decoder.
+	 * @return The deserialized object.
+	 */
+	public static <T> T parse(final ReadEventDecoder decoder, final InterfaceEventCursor cursor) {
+		return decoder.parse(cursor);
+	}
+
+	/**
+	 * Start a deserialization with a cached {@link ReadEventDecoder} that's fed events as they arrive, for
+	 * non-blocking sources.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param <T>         typeInfo
+	 * @return
+	 */
+	public static <T> ReadEventDecoder.Incremental<T> incremental(
+			final Reflections reflections, final Walk.TypeInfo typeInfo
+	) {
+		return decoders.get(reflections, typeInfo).incremental();
+	}
+
+	/**
+	 * Parse only the parts of an object selected by a projection, with a cached {@link ReadEventDecoder}.  Values
+	 * outside the projection are skipped without being decoded and the fields they would fill keep their defaults.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param projection
+	 * @param data        The stream of events.
+	 * @param <T>         typeInfo
+	 * @return The deserialized object.
+	 */
+	public static <T> T project(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final InterfacePathProjection projection,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		return decoders.get(reflections, typeInfo).parse(data, projection);
+	}
+
+	/**
+	 * Parse only the parts of an object selected by a projection from a cursor.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param projection
+	 * @param cursor
+	 * @param <T>         typeInfo
+	 * @return The deserialized object.
+	 */
+	public static <T> T project(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final InterfacePathProjection projection,
+			final InterfaceEventCursor cursor
+	) {
+		return decoders.get(reflections, typeInfo).parse(cursor, projection);
+	}
+
+	/**
+	 * Decode the elements of a document whose root is an array or an object (whose values are the elements) one at
+	 * a time, with a cached {@link ReadEventDecoder}.  Each element is decoded as the iterator reaches it, so only
+	 * one element is in memory at once.
+	 *
+	 * @param reflections
+	 * @param elementType The type of each element.
+	 * @param data        The stream of events.
+	 * @param <T>         elementType
+	 * @return
+	 */
+	public static <T> ElementIterator<T> iterator(
+			final Reflections reflections,
+			final Walk.TypeInfo elementType,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		return new ElementIterator<>(decoders.get(reflections, elementType), data.iterator());
+	}
+
+	/**
+	 * Decode the elements of a document whose root is an array or an object one at a time from a cursor.
+	 *
+	 * @param reflections
+	 * @param elementType The type of each element.
+	 * @param cursor
+	 * @param <T>         elementType
+	 * @return
+	 */
+	public static <T> ElementIterator<T> iterator(
+			final Reflections reflections, final Walk.TypeInfo elementType, final InterfaceEventCursor cursor
+	) {
+		return new ElementIterator<>(decoders.get(reflections, elementType), cursor);
+	}
+
+	/**
+	 * Like {@link #iterator(Reflections, Walk.TypeInfo, Stream)} but as a sequential stream.
+	 *
+	 * @param reflections
+	 * @param elementType The type of each element.
+	 * @param data        The stream of events.
+	 * @param <T>         elementType
+	 * @return
+	 */
+	public static <T> Stream<T> stream(
+			final Reflections reflections,
+			final Walk.TypeInfo elementType,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		return stream(iterator(reflections, elementType, data));
+	}
+
+	/**
+	 * Like {@link #iterator(Reflections, Walk.TypeInfo, InterfaceEventCursor)} but as a sequential stream.
+	 *
+	 * @param reflections
+	 * @param elementType The type of each element.
+	 * @param cursor
+	 * @param <T>         elementType
+	 * @return
+	 */
+	public static <T> Stream<T> stream(
+			final Reflections reflections, final Walk.TypeInfo elementType, final InterfaceEventCursor cursor
+	) {
+		return stream(iterator(reflections, elementType, cursor));
+	}
+
+	private static <T> Stream<T> stream(final ElementIterator<T> iterator) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+	}
 }
@@ -0,0 +1,142 @@
+package com.zarbosoft.interface1;
+
+import org.reflections.Reflections;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * A bounded, thread-safe cache of values built from a root type, such as grammars.  Entries are keyed on the
+ * Reflections instance (by identity) and the root TypeInfo and evicted least-recently-used first.
+ *
+ * @param <G> The type of the cached value.
+ */
+public class GrammarCache<G> {
+	private final int capacity;
+	private final BiFunction<Reflections, Walk.TypeInfo, G> build;
+	private final LinkedHashMap<Key, G> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param capacity The maximum number of entries to keep.
+	 * @param build    Creates a new value on a cache miss.
+	 */
+	public GrammarCache(final int capacity, final BiFunction<Reflections, Walk.TypeInfo, G> build) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Cache capacity must be at least 1.");
+		this.capacity = capacity;
+		this.build = build;
+		this.entries = new LinkedHashMap<Key, G>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, G> eldest) {
+				return size() > GrammarCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get the value for a root type, building it if it isn't cached.  The value is built outside the lock so
+	 * concurrent misses on different types don't serialize; concurrent misses on the same type may build it
+	 * more than once but only one result is kept.
+	 *
+	 * @param reflections
+	 * @param root
+	 * @return
+	 */
+	public G get(final Reflections reflections, final Walk.TypeInfo root) {
+		final Key key = new Key(reflections, root);
+		synchronized (entries) {
+			final G found = entries.get(key);
+			if (found != null) {
+				hits.incrementAndGet();
+				return found;
+			}
+		}
+		misses.incrementAndGet();
+		final G built = build.apply(reflections, root);
+		synchronized (entries) {
+			final G raced = entries.get(key);
+			if (raced != null)
+				return raced;
+			entries.put(key, built);
+		}
+		return built;
+	}
+
+	/**
+	 * Drop the cached value for a root type, if any.
+	 *
+	 * @param reflections
+	 * @param root
+	 */
+	public void invalidate(final Reflections reflections, final Walk.TypeInfo root) {
+		synchronized (entries) {
+			entries.remove(new Key(reflections, root));
+		}
+	}
+
+	/**
+	 * Drop every cached value built with a Reflections instance, for instance after the classpath it scanned
+	 * changed.
+	 *
+	 * @param reflections
+	 */
+	public void invalidate(final Reflections reflections) {
+		synchronized (entries) {
+			entries.keySet().removeIf(key -> key.reflections == reflections);
+		}
+	}
+
+	/**
+	 * Drop all cached values.
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public long hits() {
+		return hits.get();
+	}
+
+	public long misses() {
+		return misses.get();
+	}
+
+	private static class Key {
+		private final Reflections reflections;
+		private final Walk.TypeInfo root;
+
+		private Key(final Reflections reflections, final Walk.TypeInfo root) {
+			this.reflections = reflections;
+			this.root = root;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return reflections == other.reflections && root.equals(other.root);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(reflections) + root.hashCode();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.zarbosoft.interface1;
+
+import com.zarbosoft.interface1.events.InterfaceEvent;
+import com.zarbosoft.interface1.events.InterfaceEventKind;
+import com.zarbosoft.interface1.events.InvalidElement;
+import com.zarbosoft.interface1.events.InvalidEventStream;
+import com.zarbosoft.interface1.events.ReadEventDecoder;
+import com.zarbosoft.interface1.path.InterfaceRootPath;
+import com.zarbosoft.rendaw.common.Pair;
+import org.reflections.Reflections;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * Parses a document whose root is a list by splitting the events at the boundaries between top level elements and
+ * decoding chunks of elements concurrently.  The events are read on the calling thread, which only tracks the
+ * nesting depth; the elements are decoded on the executor with a shared {@link ReadEventDecoder} and reassembled
+ * in order.
+ * <p>
+ * Errors in an element are thrown as {@link InvalidElement}.
+ * <p>
+ * Chunks are decoded after the events are read so the events in the stream must not be reused by the producer
+ * (for instance, flyweights from a cursor).  At most {@code pending} chunks are buffered at a time.
+ */
+public class ParallelListParse {
+	private final Executor executor;
+	private final int chunkSize;
+	private final int pending;
+
+	/**
+	 * @param executor  Decodes chunks.
+	 * @param chunkSize The number of elements per chunk.
+	 * @param pending   The maximum number of chunks read ahead of the oldest chunk still being decoded.
+	 */
+	public ParallelListParse(final Executor executor, final int chunkSize, final int pending) {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be at least 1.");
+		if (pending < 1)
+			throw new IllegalArgumentException("Pending chunk limit must be at least 1.");
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.pending = pending;
+	}
+
+	/**
+	 * @param reflections
+	 * @param typeInfo    A list type.
+	 * @param data        The stream of events.
+	 * @param <T>         The element type.
+	 * @return The deserialized list, or null if there were no events.
+	 */
+	public <T> List<T> parse(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		if (Walk.ClassInfo.get((Class<?>) typeInfo.type).kind != Walk.Kind.LIST)
+			throw new IllegalArgumentException(String.format("[%s] is not a list type.", typeInfo));
+		if (typeInfo.parameters == null)
+			throw new AssertionError("Unparameterized list!");
+		final ReadEventDecoder decoder = Events.decoders.get(reflections, typeInfo.parameters[0]);
+		final Iterator<Pair<? extends InterfaceEvent, Object>> iterator = data.iterator();
+		if (!iterator.hasNext())
+			return null;
+		final Pair<? extends InterfaceEvent, Object> first = iterator.next();
+		if (InterfaceEventKind.of(first.first) != InterfaceEventKind.ARRAY_OPEN)
+			throw new InvalidEventStream(new InterfaceRootPath(""),
+					first.second,
+					String.format("Expected array but got [%s].", first.first)
+			);
+
+		final List<T> out = new ArrayList<>();
+		final ArrayDeque<CompletableFuture<List<T>>> futures = new ArrayDeque<>();
+		Chunk chunk = new Chunk(0);
+		int depth = 1;
+		boolean closed = false;
+		while (iterator.hasNext()) {
+			final Pair<? extends InterfaceEvent, Object> pair = iterator.next();
+			final InterfaceEventKind kind = InterfaceEventKind.of(pair.first);
+			if (closed)
+				throw new InvalidEventStream(new InterfaceRootPath(""),
+						pair.second,
+						String.format("Expected end of document but got [%s].", pair.first)
+				);
+			if (depth == 1 && kind == InterfaceEventKind.ARRAY_CLOSE) {
+				if (chunk.events.size() != (chunk.ends.isEmpty() ? 0 : chunk.ends.get(chunk.ends.size() - 1)))
+					throw new InvalidEventStream(new InterfaceRootPath(""),
+							pair.second,
+							String.format("Expected value but got [%s].", pair.first)
+					);
+				closed = true;
+				continue;
+			}
+			chunk.events.add(pair);
+			switch (kind) {
+				case OBJECT_OPEN:
+				case ARRAY_OPEN:
+					depth += 1;
+					continue;
+				case OBJECT_CLOSE:
+				case ARRAY_CLOSE:
+					depth -= 1;
+					if (depth < 1)
+						throw new InvalidEventStream(new InterfaceRootPath(""),
+								pair.second,
+								String.format("Expected value but got [%s].", pair.first)
+						);
+					break;
+				case KEY:
+				case TYPE:
+					continue;
+				default:
+					break;
+			}
+			if (depth != 1)
+				continue;
+			chunk.ends.add(chunk.events.size());
+			if (chunk.ends.size() == chunkSize) {
+				submit(decoder, chunk, futures, out);
+				chunk = new Chunk(chunk.first + chunk.ends.size());
+			}
+		}
+		if (!closed)
+			throw new InvalidEventStream(new InterfaceRootPath(""), null, "Unexpected end of document.");
+		if (!chunk.ends.isEmpty())
+			submit(decoder, chunk, futures, out);
+		while (!futures.isEmpty())
+			out.addAll(join(futures.removeFirst()));
+		return out;
+	}
+
+	private <T> void submit(
+			final ReadEventDecoder decoder,
+			final Chunk chunk,
+			final ArrayDeque<CompletableFuture<List<T>>> futures,
+			final List<T> out
+	) {
+		futures.addLast(CompletableFuture.supplyAsync(() -> chunk.decode(decoder), executor));
+		while (futures.size() > pending)
+			out.addAll(join(futures.removeFirst()));
+	}
+
+	private static <T> List<T> join(final CompletableFuture<List<T>> future) {
+		try {
+			return future.join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * The events of a run of elements and the index after the last event of each element.
+	 */
+	private static class Chunk {
+		/**
+		 * The index of the chunk's first element in the list.
+		 */
+		private final int first;
+		private final List<Pair<? extends InterfaceEvent, Object>> events = new ArrayList<>();
+		private final List<Integer> ends = new ArrayList<>();
+
+		private Chunk(final int first) {
+			this.first = first;
+		}
+
+		private <T> List<T> decode(final ReadEventDecoder decoder) {
+			final List<T> out = new ArrayList<>(ends.size());
+			int start = 0;
+			for (final int end : ends) {
+				final int index = first + out.size();
+				final ReadEventDecoder.Incremental<T> element = decoder.incremental("/" + index);
+				try {
+					for (int i = start; i < end; ++i) {
+						final Pair<? extends InterfaceEvent, Object> pair = events.get(i);
+						element.feed(pair.first, pair.second);
+					}
+					out.add(element.finish());
+				} catch (final InvalidEventStream e) {
+					throw new InvalidElement(index, null, e);
+				}
+				start = end;
+			}
+			return out;
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package com.zarbosoft.interface1;
+
+import com.zarbosoft.interface1.jfr.Flight;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Walks objects like {@link Walk#walk(Walk.TypeInfo, Object, Walk.ObjectVisitor)} but splits large lists, sets and
+ * maps into chunks walked in a fork-join pool.  Each chunk is walked into a {@link Recording} and the recordings are
+ * replayed into the visitor in order, so the visitor sees exactly the calls a sequential walk would make, from one
+ * thread at a time.
+ * <p>
+ * Chunks are walked before the visitor sees them, so {@link Walk.ObjectVisitor#visitAbstractBegin(Class, Object)}
+ * and {@link Walk.ObjectVisitor#visitConcreteBegin(Class, Object)} can't prevent values in a chunk from being
+ * walked; when they return false the recorded calls for the value are dropped during replay.
+ */
+public class ParallelWalk {
+	private final ForkJoinPool pool;
+	private final int threshold;
+
+	/**
+	 * @param pool      The pool to walk in.
+	 * @param threshold Collections with at least this many elements are split into chunks of this many elements.
+	 */
+	public ParallelWalk(final ForkJoinPool pool, final int threshold) {
+		if (threshold < 1)
+			throw new IllegalArgumentException("Threshold must be at least 1.");
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Uses the common pool and a threshold of 1024 elements.
+	 */
+	public ParallelWalk() {
+		this(ForkJoinPool.commonPool(), 1024);
+	}
+
+	/**
+	 * Walk a value.  Blocks until the walk is done.  The visitor is called from pool threads, one at a time.
+	 *
+	 * @param target
+	 * @param value
+	 * @param visitor
+	 */
+	public void walk(final Walk.TypeInfo target, final Object value, final Walk.ObjectVisitor visitor) {
+		final Flight.Walking flight = Flight.available ? Flight.recorder.walk("parallel", target) : null;
+		final Walk.ObjectVisitor counted = flight == null ? visitor : flight.count(visitor);
+		pool.invoke(new RecursiveTask<Void>() {
+			@Override
+			protected Void compute() {
+				walkInto(target, value, counted);
+				return null;
+			}
+		});
+		if (flight != null)
+			flight.finish();
+	}
+
+	private void walkInto(final Walk.TypeInfo target, final Object value, final Walk.ObjectVisitor visitor) {
+		final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) target.type);
+		switch (info.kind) {
+			case LIST:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized list!");
+				visitor.visitListStart((List) value);
+				elements(target.parameters[0], (Collection<?>) value, visitor);
+				visitor.visitListEnd((List) value);
+				break;
+			case SET:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized set!");
+				visitor.visitSetStart((Set) value);
+				elements(target.parameters[0], (Collection<?>) value, visitor);
+				visitor.visitSetEnd((Set) value);
+				break;
+			case MAP:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized map!");
+				if (target.parameters[0].type != String.class)
+					throw new AssertionError("Interfacable maps must have String keys.");
+				visitor.visitMapStart((Map) value);
+				entries(target.parameters[1], (Map<String, ?>) value, visitor);
+				visitor.visitMapEnd((Map) value);
+				break;
+			case ABSTRACT: {
+				final boolean enter = visitor.visitAbstractBegin(info.klass, value);
+				if (enter) {
+					walkInto(Walk.TypeInfo.of(value.getClass()), value, visitor);
+					visitor.visitAbstractEnd(info.klass, value);
+				}
+				break;
+			}
+			case CONCRETE: {
+				final boolean enter = visitor.visitConcreteBegin(info.klass, value);
+				if (enter) {
+					final boolean boxed = visitor.wantsFieldValues();
+					for (final Walk.FieldInfo field : info.fields) {
+						if (field.primitive && !boxed) {
+							visitor.visitFieldBegin(field.field, null);
+							field.visitPrimitive(value, visitor);
+							visitor.visitFieldEnd(field.field, null);
+							continue;
+						}
+						final Object subvalue = field.get(value);
+						visitor.visitFieldBegin(field.field, subvalue);
+						walkInto(field.type, subvalue, visitor);
+						visitor.visitFieldEnd(field.field, subvalue);
+					}
+					visitor.visitConcreteEnd(info.klass, value);
+				}
+				break;
+			}
+			default:
+				Walk.walkValue(target, value, visitor);
+		}
+	}
+
+	private void elements(
+			final Walk.TypeInfo element, final Collection<?> value, final Walk.ObjectVisitor visitor
+	) {
+		if (value.size() < threshold) {
+			for (final Object subvalue : value)
+				walkInto(element, subvalue, visitor);
+			return;
+		}
+		final Object[] values = value.toArray();
+		final boolean fieldValues = visitor.wantsFieldValues();
+		final List<RecursiveTask<Recording>> chunks = new ArrayList<>();
+		for (int start = 0; start < values.length; start += threshold) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(values.length, start + threshold);
+			chunks.add(new RecursiveTask<Recording>() {
+				@Override
+				protected Recording compute() {
+					final Recording recording = new Recording(fieldValues);
+					for (int i = chunkStart; i < chunkEnd; ++i)
+						walkInto(element, values[i], recording);
+					return recording;
+				}
+			});
+		}
+		replay(chunks, visitor);
+	}
+
+	private void entries(final Walk.TypeInfo element, final Map<String, ?> value, final Walk.ObjectVisitor visitor) {
+		if (value.size() < threshold) {
+			for (final Map.Entry<String, ?> subvalue : value.entrySet()) {
+				visitor.visitKeyBegin(subvalue.getKey());
+				walkInto(element, subvalue.getValue(), visitor);
+				visitor.visitKeyEnd(subvalue.getKey());
+			}
+			return;
+		}
+		final Map.Entry<String, ?>[] entries = value.entrySet().toArray(new Map.Entry[0]);
+		final boolean fieldValues = visitor.wantsFieldValues();
+		final List<RecursiveTask<Recording>> chunks = new ArrayList<>();
+		for (int start = 0; start < entries.length; start += threshold) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(entries.length, start + threshold);
+			chunks.add(new RecursiveTask<Recording>() {
+				@Override
+				protected Recording compute() {
+					final Recording recording = new Recording(fieldValues);
+					for (int i = chunkStart; i < chunkEnd; ++i) {
+						recording.visitKeyBegin(entries[i].getKey());
+						walkInto(element, entries[i].getValue(), recording);
+						recording.visitKeyEnd(entries[i].getKey());
+					}
+					return recording;
+				}
+			});
+		}
+		replay(chunks, visitor);
+	}
+
+	private static void replay(final List<RecursiveTask<Recording>> chunks, final Walk.ObjectVisitor visitor) {
+		ForkJoinTask.invokeAll(chunks);
+		for (final RecursiveTask<Recording> chunk : chunks) {
+			if (visitor instanceof Recording)
+				((Recording) visitor).append(chunk.join());
+			else
+				chunk.join().replay(visitor);
+		}
+	}
+
+	/**
+	 * Stores ObjectVisitor calls to replay later.  Begin calls always return true when recording; when the visitor
+	 * being replayed to returns false the calls up to the matching end are skipped.
+	 */
+	public static class Recording implements Walk.ObjectVisitor {
+		private static final byte STRING = 0;
+		private static final byte INTEGER = 1;
+		private static final byte DOUBLE = 2;
+		private static final byte BOOLEAN = 3;
+		private static final byte INT = 4;
+		private static final byte DOUBLE_PRIMITIVE = 5;
+		private static final byte BOOLEAN_PRIMITIVE = 6;
+		private static final byte ENUM = 7;
+		private static final byte LIST_START = 8;
+		private static final byte LIST_END = 9;
+		private static final byte SET_START = 10;
+		private static final byte SET_END = 11;
+		private static final byte MAP_START = 12;
+		private static final byte KEY_BEGIN = 13;
+		private static final byte KEY_END = 14;
+		private static final byte MAP_END = 15;
+		private static final byte ABSTRACT_BEGIN = 16;
+		private static final byte ABSTRACT_END = 17;
+		private static final byte CONCRETE_BEGIN = 18;
+		private static final byte FIELD_BEGIN = 19;
+		private static final byte FIELD_END = 20;
+		private static final byte CONCRETE_END = 21;
+		private static final byte OTHER = 22;
+		private static final byte RECORDING = 23;
+
+		private final boolean fieldValues;
+		private int size = 0;
+		private byte[] ops = new byte[64];
+		private Object[] first = new Object[64];
+		private Object[] second = new Object[64];
+		private long[] numbers = new long[64];
+
+		/**
+		 * For begin calls, the index of the matching end call.
+		 */
+		private int[] ends = new int[64];
+
+		/**
+		 * Indexes of begin calls whose end hasn't been recorded yet.
+		 */
+		private int[] open = new int[16];
+		private int openSize = 0;
+
+		/**
+		 * @param fieldValues The value to return from {@link #wantsFieldValues()}; should match the visitor this
+		 *                    will be replayed to.
+		 */
+		public Recording(final boolean fieldValues) {
+			this.fieldValues = fieldValues;
+		}
+
+		private int add(final byte op, final Object first, final Object second, final long number) {
+			if (size == ops.length) {
+				final int length = size * 2;
+				ops = Arrays.copyOf(ops, length);
+				this.first = Arrays.copyOf(this.first, length);
+				this.second = Arrays.copyOf(this.second, length);
+				numbers = Arrays.copyOf(numbers, length);
+				ends = Arrays.copyOf(ends, length);
+			}
+			ops[size] = op;
+			this.first[size] = first;
+			this.second[size] = second;
+			numbers[size] = number;
+			return size++;
+		}
+
+		private void begin(final byte op, final Object first, final Object second) {
+			if (openSize == open.length)
+				open = Arrays.copyOf(open, openSize * 2);
+			open[openSize++] = add(op, first, second, 0);
+		}
+
+		private void end(final byte op, final Object first, final Object second) {
+			ends[open[--openSize]] = add(op, first, second, 0);
+		}
+
+		/**
+		 * Add another recording's calls after the calls recorded so far.
+		 *
+		 * @param other
+		 */
+		public void append(final Recording other) {
+			add(RECORDING, other, null, 0);
+		}
+
+		/**
+		 * Make the recorded calls on a visitor.
+		 *
+		 * @param visitor
+		 */
+		public void replay(final Walk.ObjectVisitor visitor) {
+			for (int i = 0; i < size; ++i) {
+				final Object first = this.first[i];
+				final Object second = this.second[i];
+				switch (ops[i]) {
+					case STRING:
+						visitor.visitString((String) first);
+						break;
+					case INTEGER:
+						visitor.visitInteger((Integer) first);
+						break;
+					case DOUBLE:
+						visitor.visitDouble((Double) first);
+						break;
+					case BOOLEAN:
+						visitor.visitBoolean((Boolean) first);
+						break;
+					case INT:
+						visitor.visitInt((int) numbers[i]);
+						break;
+					case DOUBLE_PRIMITIVE:
+						visitor.visitDouble(Double.longBitsToDouble(numbers[i]));
+						break;
+					case BOOLEAN_PRIMITIVE:
+						visitor.visitBoolean(numbers[i] != 0);
+						break;
+					case ENUM:
+						visitor.visitEnum((Enum) first);
+						break;
+					case LIST_START:
+						visitor.visitListStart((List) first);
+						break;
+					case LIST_END:
+						visitor.visitListEnd((List) first);
+						break;
+					case SET_START:
+						visitor.visitSetStart((Set) first);
+						break;
+					case SET_END:
+						visitor.visitSetEnd((Set) first);
+						break;
+					case MAP_START:
+						visitor.visitMapStart((Map) first);
+						break;
+					case KEY_BEGIN:
+						visitor.visitKeyBegin((String) first);
+						break;
+					case KEY_END:
+						visitor.visitKeyEnd((String) first);
+						break;
+					case MAP_END:
+						visitor.visitMapEnd((Map) first);
+						break;
+					case ABSTRACT_BEGIN:
+						if (!visitor.visitAbstractBegin((Class<?>) first, second))
+							i = ends[i];
+						break;
+					case ABSTRACT_END:
+						visitor.visitAbstractEnd((Class<?>) first, second);
+						break;
+					case CONCRETE_BEGIN:
+						if (!visitor.visitConcreteBegin((Class<?>) first, second))
+							i = ends[i];
+						break;
+					case FIELD_BEGIN:
+						visitor.visitFieldBegin((Field) first, second);
+						break;
+					case FIELD_END:
+						visitor.visitFieldEnd((Field) first, second);
+						break;
+					case CONCRETE_END:
+						visitor.visitConcreteEnd((Class<?>) first, second);
+						break;
+					case OTHER:
+						visitor.visitOther(first);
+						break;
+					case RECORDING:
+						((Recording) first).replay(visitor);
+						break;
+					default:
+						throw new AssertionError();
+				}
+			}
+		}
+
+		@Override
+		public void visitString(final String value) {
+			add(STRING, value, null, 0);
+		}
+
+		@Override
+		public void visitInteger(final Integer value) {
+			add(INTEGER, value, null, 0);
+		}
+
+		@Override
+		public void visitDouble(final Double value) {
+			add(DOUBLE, value, null, 0);
+		}
+
+		@Override
+		public void visitBoolean(final Boolean value) {
+			add(BOOLEAN, value, null, 0);
+		}
+
+		@Override
+		public void visitInt(final int value) {
+			add(INT, null, null, value);
+		}
+
+		@Override
+		public void visitDouble(final double value) {
+			add(DOUBLE_PRIMITIVE, null, null, Double.doubleToRawLongBits(value));
+		}
+
+		@Override
+		public void visitBoolean(final boolean value) {
+			add(BOOLEAN_PRIMITIVE, null, null, value ? 1 : 0);
+		}
+
+		@Override
+		public boolean wantsFieldValues() {
+			return fieldValues;
+		}
+
+		@Override
+		public void visitEnum(final Enum value) {
+			add(ENUM, value, null, 0);
+		}
+
+		@Override
+		public void visitListStart(final List value) {
+			add(LIST_START, value, null, 0);
+		}
+
+		@Override
+		public void visitListEnd(final List value) {
+			add(LIST_END, value, null, 0);
+		}
+
+		@Override
+		public void visitSetStart(final Set value) {
+			add(SET_START, value, null, 0);
+		}
+
+		@Override
+		public void visitSetEnd(final Set value) {
+			add(SET_END, value, null, 0);
+		}
+
+		@Override
+		public void visitMapStart(final Map value) {
+			add(MAP_START, value, null, 0);
+		}
+
+		@Override
+		public void visitKeyBegin(final String key) {
+			add(KEY_BEGIN, key, null, 0);
+		}
+
+		@Override
+		public void visitKeyEnd(final String key) {
+			add(KEY_END, key, null, 0);
+		}
+
+		@Override
+		public void visitMapEnd(final Map value) {
+			add(MAP_END, value, null, 0);
+		}
+
+		@Override
+		public boolean visitAbstractBegin(final Class<?> klass, final Object value) {
+			begin(ABSTRACT_BEGIN, klass, value);
+			return true;
+		}
+
+		@Override
+		public void visitAbstractEnd(final Class<?> klass, final Object value) {
+			end(ABSTRACT_END, klass, value);
+		}
+
+		@Override
+		public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+			begin(CONCRETE_BEGIN, klass, value);
+			return true;
+		}
+
+		@Override
+		public void visitFieldBegin(final Field field, final Object value) {
+			add(FIELD_BEGIN, field, value, 0);
+		}
+
+		@Override
+		public void visitFieldEnd(final Field field, final Object value) {
+			add(FIELD_END, field, value, 0);
+		}
+
+		@Override
+		public void visitConcreteEnd(final Class<?> klass, final Object value) {
+			end(CONCRETE_END, klass, value);
+		}
+
+		@Override
+		public void visitOther(final Object value) {
+			add(OTHER, value, null, 0);
+		}
+	}
+}
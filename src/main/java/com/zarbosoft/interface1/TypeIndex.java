@@ -0,0 +1,127 @@
+package com.zarbosoft.interface1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads the type index written by the interface annotation processor (the interface-processor module).  When a
+ * class is listed in an index its subtypes are taken from the index instead of scanning the classpath.
+ * <p>
+ * The index is a UTF-8 text resource, one record per line as tab separated fields:
+ * <pre>
+ * type  [binary name]  [serialized name]  [abstract|concrete|enum]
+ * super [binary name of a @Configuration supertype of the preceding type]
+ * </pre>
+ * Tabs, newlines and backslashes in values are escaped with backslashes.  Unknown records are ignored.
+ */
+public class TypeIndex {
+	public static final String RESOURCE = "META-INF/interface1/types";
+
+	private static final Map<ClassLoader, TypeIndex> indexes = new WeakHashMap<>();
+	private static final List<Class<?>> notIndexed = Collections.unmodifiableList(new ArrayList<>());
+	private static final ClassValue<List<Class<?>>> resolved = new ClassValue<List<Class<?>>>() {
+		@Override
+		protected List<Class<?>> computeValue(final Class<?> type) {
+			final ClassLoader loader =
+					type.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : type.getClassLoader();
+			final TypeIndex index = forLoader(loader);
+			if (!index.types.contains(type.getName()))
+				return notIndexed;
+			final List<Class<?>> out = new ArrayList<>();
+			for (final String name : index.subTypeNames.getOrDefault(type.getName(), Collections.emptyList())) {
+				try {
+					out.add(Class.forName(name, false, loader));
+				} catch (final ClassNotFoundException e) {
+					throw new IllegalStateException(String.format("Indexed subtype [%s] of [%s] can't be loaded.",
+							name,
+							type.getName()
+					), e);
+				}
+			}
+			return Collections.unmodifiableList(out);
+		}
+	};
+
+	private final Set<String> types = new HashSet<>();
+	private final Map<String, List<String>> subTypeNames = new HashMap<>();
+
+	private TypeIndex(final ClassLoader loader) {
+		final Enumeration<URL> resources;
+		try {
+			resources = loader.getResources(RESOURCE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		while (resources.hasMoreElements())
+			read(resources.nextElement());
+	}
+
+	private static synchronized TypeIndex forLoader(final ClassLoader loader) {
+		return indexes.computeIfAbsent(loader, TypeIndex::new);
+	}
+
+	/**
+	 * The subtypes of an indexed class (all indexed classes derived from it).
+	 *
+	 * @param klass
+	 * @return The subtypes or null if the class isn't in an index.
+	 */
+	public static List<Class<?>> subTypesOf(final Class<?> klass) {
+		final List<Class<?>> out = resolved.get(klass);
+		if (out == notIndexed)
+			return null;
+		return out;
+	}
+
+	private void read(final URL url) {
+		try (
+				BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(),
+						StandardCharsets.UTF_8
+				))
+		) {
+			String type = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				final String[] parts = line.split("\t", -1);
+				switch (parts[0]) {
+					case "type":
+						type = unescape(parts[1]);
+						types.add(type);
+						break;
+					case "super":
+						if (type == null)
+							throw new IllegalStateException(String.format("Supertype before type in [%s].", url));
+						subTypeNames.computeIfAbsent(unescape(parts[1]), k -> new ArrayList<>()).add(type);
+						break;
+					default:
+						break;
+				}
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String unescape(final String value) {
+		if (value.indexOf('\\') < 0)
+			return value;
+		final StringBuilder out = new StringBuilder();
+		for (int i = 0; i < value.length(); ++i) {
+			final char c = value.charAt(i);
+			if (c != '\\' || i + 1 == value.length()) {
+				out.append(c);
+				continue;
+			}
+			final char next = value.charAt(++i);
+			out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+		}
+		return out.toString();
+	}
+}
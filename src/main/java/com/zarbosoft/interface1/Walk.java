@@ -1,24 +1,32 @@
 package com.zarbosoft.interface1;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.zarbosoft.interface1.jfr.Flight;
 import com.zarbosoft.rendaw.common.ChainComparator;
-import com.zarbosoft.rendaw.common.Common;
 import com.zarbosoft.rendaw.common.Pair;
 import org.reflections.Reflections;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.zarbosoft.rendaw.common.Common.uncheck;
 import static java.util.Arrays.stream;
 
 public class Walk {
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
 	/**
 	 * A helper method to determine the serialized name of an annotated field.
 	 *
@@ -52,7 +60,7 @@ public class Walk {
 	 * @return
 	 */
 	public static String decideEnumName(final Enum value) {
-		return decideName(uncheck(() -> value.getClass().getField(value.name())));
+		return ClassInfo.get(value.getDeclaringClass()).enumNames[value.ordinal()];
 	}
 
 	public static boolean required(final Field field) {
@@ -68,63 +76,44 @@ public class Walk {
 		}).collect(Collectors.toList());
 	}
 
-	private static Stream<Field> getFields(final Class<?> klass) {
-		class FieldIterator implements Iterator<Class<?>> {
-			private Class<?> at;
-
-			public FieldIterator(final Class<?> klass) {
-				at = klass;
-			}
-
-			@Override
-			public boolean hasNext() {
-				return at != null;
-			}
+	/**
+	 * A class that represents a complete type.  TypeInfos compare by type, parameters and field; use the
+	 * {@code of} factories to get a shared canonical instance.
+	 */
+	public static class TypeInfo {
 
+		private static final Interner<TypeInfo> interned = Interners.newWeakInterner();
+		private static final ClassValue<TypeInfo> classTypes = new ClassValue<TypeInfo>() {
 			@Override
-			public Class<?> next() {
-				final Class<?> out = at;
-				at = at.getSuperclass();
-				return out;
+			protected TypeInfo computeValue(final Class<?> type) {
+				return interned.intern(new TypeInfo(type));
 			}
-		}
-		return Common
-				.stream(new FieldIterator(klass))
-				.flatMap(klass2 -> stream(klass2.getDeclaredFields()))
-				.filter(f -> f.getAnnotation(Configuration.class) != null)
-				.map(f -> {
-					try {
-						klass.getMethod(f.getName(), f.getType());
-					} catch (final NoSuchMethodException e) {
-						if ((f.getModifiers() & Modifier.PUBLIC) == 0)
-							throw new AssertionError(String.format("Field %s marked for serialization is not public.",
-									f
-							));
+		};
+		private static final ClassValue<ConcurrentHashMap<String, TypeInfo>> fieldTypes =
+				new ClassValue<ConcurrentHashMap<String, TypeInfo>>() {
+					@Override
+					protected ConcurrentHashMap<String, TypeInfo> computeValue(final Class<?> type) {
+						return new ConcurrentHashMap<>();
 					}
-					return f;
-				});
-	}
-
-	/**
-	 * A class that represents a complete type.
-	 */
-	public static class TypeInfo {
+				};
 
 		public final Type type;
 		public final TypeInfo[] parameters;
 		public final Field field;
+		private final int hash;
 
 		private TypeInfo(final Field field, final Type target) {
 			if (target instanceof ParameterizedType) {
 				this.type = ((ParameterizedType) target).getRawType();
 				parameters = stream(((ParameterizedType) target).getActualTypeArguments())
-						.map(type1 -> new TypeInfo(type1))
+						.map(type1 -> of(type1))
 						.toArray(TypeInfo[]::new);
 			} else {
 				this.type = target;
 				this.parameters = null;
 			}
 			this.field = field;
+			this.hash = computeHash();
 		}
 
 		/**
@@ -146,6 +135,7 @@ public class Walk {
 			this.type = type;
 			this.parameters = parameter;
 			this.field = null;
+			this.hash = computeHash();
 		}
 
 		/**
@@ -158,10 +148,493 @@ public class Walk {
 			this.type = f.getType();
 			if (f.getGenericType() instanceof ParameterizedType)
 				this.parameters = stream(((ParameterizedType) f.getGenericType()).getActualTypeArguments())
-						.map(type1 -> new TypeInfo(field, type1))
+						.map(type1 -> interned.intern(new TypeInfo(field, type1)))
 						.toArray(TypeInfo[]::new);
 			else
 				this.parameters = null;
+			this.hash = computeHash();
+		}
+
+		/**
+		 * The canonical TypeInfo for a simple type.
+		 *
+		 * @param target
+		 * @return
+		 */
+		public static TypeInfo of(final Type target) {
+			if (target instanceof Class)
+				return classTypes.get((Class<?>) target);
+			return interned.intern(new TypeInfo(target));
+		}
+
+		/**
+		 * The canonical TypeInfo for a generic type.
+		 *
+		 * @param type
+		 * @param parameter
+		 * @return
+		 */
+		public static TypeInfo of(final Type type, final TypeInfo... parameter) {
+			return interned.intern(new TypeInfo(type, parameter));
+		}
+
+		/**
+		 * The canonical TypeInfo for a field.  Repeated lookups of the same field don't allocate.
+		 *
+		 * @param f
+		 * @return
+		 */
+		public static TypeInfo of(final Field f) {
+			final ConcurrentHashMap<String, TypeInfo> declared = fieldTypes.get(f.getDeclaringClass());
+			final TypeInfo found = declared.get(f.getName());
+			if (found != null)
+				return found;
+			final TypeInfo created = interned.intern(new TypeInfo(f));
+			declared.putIfAbsent(f.getName(), created);
+			return created;
+		}
+
+		/**
+		 * @param target
+		 * @return The shared instance equal to the argument.
+		 */
+		static TypeInfo canonical(final TypeInfo target) {
+			return interned.intern(target);
+		}
+
+		private int computeHash() {
+			return Objects.hash(type, field) * 31 + Arrays.hashCode(parameters);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof TypeInfo))
+				return false;
+			final TypeInfo other = (TypeInfo) obj;
+			return hash == other.hash &&
+					type.equals(other.type) &&
+					Objects.equals(field, other.field) &&
+					Arrays.equals(parameters, other.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			if (parameters == null)
+				return type.getTypeName();
+			return String.format("%s<%s>",
+					type.getTypeName(),
+					stream(parameters).map(TypeInfo::toString).collect(Collectors.joining(", "))
+			);
+		}
+	}
+
+	/**
+	 * How a class is walked.
+	 */
+	public enum Kind {
+		STRING,
+		INTEGER,
+		DOUBLE,
+		BOOLEAN,
+		ENUM,
+		LIST,
+		SET,
+		MAP,
+		ABSTRACT,
+		CONCRETE,
+		OTHER
+	}
+
+	/**
+	 * Reflection data about a class used while walking, computed once per class.
+	 */
+	public static class ClassInfo {
+		private static final ClassValue<ClassInfo> infos = new ClassValue<ClassInfo>() {
+			@Override
+			protected ClassInfo computeValue(final Class<?> type) {
+				return new ClassInfo(type);
+			}
+		};
+
+		public final Class<?> klass;
+		public final Kind kind;
+
+		/**
+		 * The serialized name, as per {@link #decideName(Class)}.
+		 */
+		public final String name;
+
+		/**
+		 * For concrete classes, annotated fields from the most to least derived class.  Otherwise empty.
+		 */
+		public final List<FieldInfo> fields;
+
+		/**
+		 * For concrete classes, whether there's a public nullary constructor.
+		 */
+		public final boolean constructible;
+
+		/**
+		 * For enums, the serialized names of the values indexed by ordinal.  Otherwise null.
+		 */
+		public final String[] enumNames;
+
+		/**
+		 * For enums, the values by serialized name.  Otherwise null.
+		 */
+		public final Map<String, Enum<?>> enumsByName;
+
+		private final MethodHandle constructor;
+
+		private ClassInfo(final Class<?> klass) {
+			this.klass = klass;
+			this.kind = classify(klass);
+			this.name = decideName(klass);
+			if (kind == Kind.CONCRETE) {
+				this.fields = Collections.unmodifiableList(findFields(klass));
+				Constructor<?> constructor;
+				try {
+					constructor = klass.getConstructor();
+				} catch (final NoSuchMethodException e) {
+					constructor = null;
+				}
+				this.constructible = constructor != null;
+				this.constructor = constructor == null ? null : unreflect(constructor);
+			} else {
+				this.fields = Collections.emptyList();
+				this.constructible = false;
+				this.constructor = null;
+			}
+			if (kind == Kind.ENUM) {
+				this.enumNames = enumValues(klass).stream().map(pair -> decideName(pair.second)).toArray(String[]::new);
+				final Map<String, Enum<?>> byName = new HashMap<>();
+				for (final Object value : klass.getEnumConstants()) {
+					final Enum<?> replaced = byName.put(enumNames[((Enum<?>) value).ordinal()], (Enum<?>) value);
+					if (replaced != null)
+						throw new AssertionError(String.format(
+								"Enum values [%s] and [%s] of [%s] have the same name [%s].",
+								replaced.name(),
+								((Enum<?>) value).name(),
+								klass,
+								enumNames[((Enum<?>) value).ordinal()]
+						));
+				}
+				this.enumsByName = Collections.unmodifiableMap(byName);
+			} else {
+				this.enumNames = null;
+				this.enumsByName = null;
+			}
+		}
+
+		public static ClassInfo get(final Class<?> klass) {
+			return infos.get(klass);
+		}
+
+		/**
+		 * Create a new instance of a concrete class with its nullary constructor.
+		 *
+		 * @return
+		 */
+		public Object newInstance() {
+			if (constructor == null)
+				return uncheck(klass::newInstance);
+			try {
+				return (Object) constructor.invokeExact();
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private static MethodHandle unreflect(final Constructor<?> constructor) {
+			try {
+				return lookup
+						.unreflectConstructor(constructor)
+						.asType(MethodType.methodType(Object.class));
+			} catch (final IllegalAccessException e) {
+				return null;
+			}
+		}
+
+		private static Kind classify(final Class<?> klass) {
+			if (klass == String.class)
+				return Kind.STRING;
+			else if ((klass == int.class) || (klass == Integer.class))
+				return Kind.INTEGER;
+			else if ((klass == double.class) || (klass == Double.class))
+				return Kind.DOUBLE;
+			else if ((klass == boolean.class) || (klass == Boolean.class))
+				return Kind.BOOLEAN;
+			else if (klass.isEnum())
+				return Kind.ENUM;
+			else if (List.class.isAssignableFrom(klass))
+				return Kind.LIST;
+			else if (Set.class.isAssignableFrom(klass))
+				return Kind.SET;
+			else if (Map.class.isAssignableFrom(klass))
+				return Kind.MAP;
+			else if (klass.getAnnotation(Configuration.class) != null) {
+				if (klass.isInterface() || Modifier.isAbstract(klass.getModifiers()))
+					return Kind.ABSTRACT;
+				return Kind.CONCRETE;
+			}
+			return Kind.OTHER;
+		}
+
+		private static List<FieldInfo> findFields(final Class<?> klass) {
+			final List<FieldInfo> out = new ArrayList<>();
+			for (Class<?> at = klass; at != null; at = at.getSuperclass()) {
+				for (final Field f : at.getDeclaredFields()) {
+					if (f.getAnnotation(Configuration.class) == null)
+						continue;
+					final Method setter = findMethod(klass, f.getName(), f.getType());
+					if (setter == null && (f.getModifiers() & Modifier.PUBLIC) == 0)
+						throw new AssertionError(String.format("Field %s marked for serialization is not public.", f));
+					out.add(new FieldInfo(f, findMethod(klass, f.getName()), setter));
+				}
+			}
+			return out;
+		}
+
+		private static Method findMethod(final Class<?> klass, final String name, final Class<?>... parameters) {
+			try {
+				return klass.getMethod(name, parameters);
+			} catch (final NoSuchMethodException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Reflection data about an annotated field of a concrete class.
+	 */
+	public static class FieldInfo {
+		public final Field field;
+
+		/**
+		 * The serialized name, as per {@link #decideName(Field)}.
+		 */
+		public final String name;
+		public final TypeInfo type;
+		public final Configuration annotation;
+
+		/**
+		 * A public method with the field's name and no arguments, or null.
+		 */
+		public final Method getter;
+
+		/**
+		 * A public method with the field's name taking the field's type, or null.
+		 */
+		public final Method setter;
+
+		/**
+		 * Whether the field must be present when deserializing.  Collections and maps are never required.
+		 */
+		public final boolean required;
+
+		/**
+		 * Whether the field has a primitive type (int, double, boolean), readable and writable without boxing.
+		 */
+		public final boolean primitive;
+
+		/**
+		 * Reads the field, (Object)Object.  Null if the getter or field isn't accessible via a method handle.
+		 */
+		private final MethodHandle read;
+
+		/**
+		 * Reads a primitive field without boxing, (Object)int/double/boolean.  Null if not primitive or not
+		 * accessible.
+		 */
+		private final MethodHandle readPrimitive;
+
+		/**
+		 * Writes a primitive field without boxing, (Object, int/double/boolean)void.  Null if not primitive or not
+		 * accessible.
+		 */
+		private final MethodHandle writePrimitive;
+
+		/**
+		 * Writes the field, (Object, Object)void.  Null if the setter or field isn't accessible via a method handle.
+		 */
+		private final MethodHandle write;
+
+		private FieldInfo(final Field field, final Method getter, final Method setter) {
+			this.field = field;
+			this.name = decideName(field);
+			this.type = TypeInfo.of(field);
+			this.annotation = field.getAnnotation(Configuration.class);
+			this.getter = getter;
+			this.setter = setter;
+			this.required = !Collection.class.isAssignableFrom(field.getType()) &&
+					!Map.class.isAssignableFrom(field.getType()) &&
+					!annotation.optional();
+			final Class<?> fieldType = field.getType();
+			this.primitive = fieldType == int.class || fieldType == double.class || fieldType == boolean.class;
+			MethodHandle read;
+			MethodHandle readPrimitive = null;
+			try {
+				read = getter != null ? lookup.unreflect(getter) : lookup.unreflectGetter(field);
+				if (primitive)
+					readPrimitive = read.asType(MethodType.methodType(fieldType, Object.class));
+				read = read.asType(MethodType.methodType(Object.class, Object.class));
+			} catch (final IllegalAccessException e) {
+				read = null;
+			}
+			this.read = read;
+			this.readPrimitive = readPrimitive;
+			MethodHandle write;
+			MethodHandle writePrimitive = null;
+			try {
+				write = setter != null ? lookup.unreflect(setter) : lookup.unreflectSetter(field);
+				if (primitive)
+					writePrimitive = write.asType(MethodType.methodType(void.class, Object.class, fieldType));
+				write = write.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			} catch (final IllegalAccessException e) {
+				write = null;
+			}
+			this.write = write;
+			this.writePrimitive = writePrimitive;
+		}
+
+		/**
+		 * Read the field's value from an object, via the getter if there is one.
+		 *
+		 * @param target
+		 * @return
+		 */
+		public Object get(final Object target) {
+			if (read == null)
+				return uncheck(() -> getter != null ? getter.invoke(target) : field.get(target));
+			try {
+				return (Object) read.invokeExact(target);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Write the field's value in an object, via the setter if there is one.
+		 *
+		 * @param target
+		 * @param value
+		 */
+		public void set(final Object target, final Object value) {
+			if (write == null) {
+				uncheck(() -> {
+					if (setter != null)
+						setter.invoke(target, value);
+					else
+						field.set(target, value);
+				});
+				return;
+			}
+			try {
+				write.invokeExact(target, value);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Write an int field without boxing.  Falls back to {@link #set(Object, Object)} for non-primitive fields.
+		 *
+		 * @param target
+		 * @param value
+		 */
+		public void setInt(final Object target, final int value) {
+			if (writePrimitive == null || field.getType() != int.class) {
+				set(target, value);
+				return;
+			}
+			try {
+				writePrimitive.invokeExact(target, value);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Write a double field without boxing.  Falls back to {@link #set(Object, Object)} for non-primitive fields.
+		 *
+		 * @param target
+		 * @param value
+		 */
+		public void setDouble(final Object target, final double value) {
+			if (writePrimitive == null || field.getType() != double.class) {
+				set(target, value);
+				return;
+			}
+			try {
+				writePrimitive.invokeExact(target, value);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Write a boolean field without boxing.  Falls back to {@link #set(Object, Object)} for non-primitive
+		 * fields.
+		 *
+		 * @param target
+		 * @param value
+		 */
+		public void setBoolean(final Object target, final boolean value) {
+			if (writePrimitive == null || field.getType() != boolean.class) {
+				set(target, value);
+				return;
+			}
+			try {
+				writePrimitive.invokeExact(target, value);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Pass a primitive field's value to the visitor's unboxed callback ({@link ObjectVisitor#visitInt(int)},
+		 * etc).
+		 *
+		 * @param target
+		 * @param visitor
+		 */
+		public void visitPrimitive(final Object target, final ObjectVisitor visitor) {
+			if (readPrimitive == null) {
+				walkValue(type, get(target), visitor);
+				return;
+			}
+			try {
+				final Class<?> fieldType = field.getType();
+				if (fieldType == int.class)
+					visitor.visitInt((int) readPrimitive.invokeExact(target));
+				else if (fieldType == double.class)
+					visitor.visitDouble((double) readPrimitive.invokeExact(target));
+				else
+					visitor.visitBoolean((boolean) readPrimitive.invokeExact(target));
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
@@ -215,6 +688,46 @@ public class Walk {
 
 		void visitBoolean(Boolean value);
 
+		/**
+		 * Called instead of {@link #visitInteger(Integer)} for int fields when {@link #wantsFieldValues()} is false.
+		 *
+		 * @param value
+		 */
+		default void visitInt(final int value) {
+			visitInteger(value);
+		}
+
+		/**
+		 * Called instead of {@link #visitDouble(Double)} for double fields when {@link #wantsFieldValues()} is
+		 * false.
+		 *
+		 * @param value
+		 */
+		default void visitDouble(final double value) {
+			visitDouble((Double) value);
+		}
+
+		/**
+		 * Called instead of {@link #visitBoolean(Boolean)} for boolean fields when {@link #wantsFieldValues()} is
+		 * false.
+		 *
+		 * @param value
+		 */
+		default void visitBoolean(final boolean value) {
+			visitBoolean((Boolean) value);
+		}
+
+		/**
+		 * If false, fields with primitive types are passed to {@link #visitFieldBegin(Field, Object)} and
+		 * {@link #visitFieldEnd(Field, Object)} with a null value and their values go to the unboxed callbacks, so
+		 * no boxing takes place.
+		 *
+		 * @return
+		 */
+		default boolean wantsFieldValues() {
+			return true;
+		}
+
 		void visitEnum(Enum value);
 
 		void visitListStart(List value);
@@ -252,10 +765,77 @@ public class Walk {
 		}
 	}
 
+	/**
+	 * Find the classes derived from a class.  Uses the index written by the annotation processor if the class is
+	 * indexed (see {@link TypeIndex}), otherwise scans with Reflections.
+	 *
+	 * @param reflections May be null if all walked polymorphic types are indexed.
+	 * @param klass
+	 * @return
+	 */
+	public static Collection<? extends Class<?>> subTypesOf(final Reflections reflections, final Class<?> klass) {
+		final List<Class<?>> indexed = TypeIndex.subTypesOf(klass);
+		if (indexed != null)
+			return indexed;
+		if (reflections == null)
+			throw new IllegalArgumentException(String.format(
+					"Polymorphic type [%s] isn't in a type index and no Reflections instance was provided.",
+					klass
+			));
+		return reflections.getSubTypesOf((Class<Object>) klass);
+	}
+
+	/**
+	 * The concrete types a polymorphic type can be deserialized as, sorted by name.  Takes the include and exclude
+	 * settings of the TypeInfo's field into account.
+	 *
+	 * @param reflections May be null if the type is indexed.
+	 * @param target      An abstract type.
+	 * @return
+	 */
+	public static List<Class<?>> derivedTypes(final Reflections reflections, final TypeInfo target) {
+		final java.util.Set<String> subclassNames = new HashSet<>();
+		final Set<Class<?>> exclude;
+		final Set<Class<?>> include;
+		if (target.field != null) {
+			final Configuration fieldConfig = target.field.getAnnotation(Configuration.class);
+			exclude = new HashSet<>(Arrays.asList(fieldConfig.exclude()));
+			include = new HashSet<>(Arrays.asList(fieldConfig.include()));
+		} else {
+			exclude = ImmutableSet.of();
+			include = ImmutableSet.of();
+		}
+		final boolean timed = Flight.available && Flight.building();
+		final long start = timed ? System.nanoTime() : 0;
+		final Collection<? extends Class<?>> subtypes = subTypesOf(reflections, (Class<?>) target.type);
+		if (timed)
+			Flight.recorder.scanned(System.nanoTime() - start);
+		return subtypes
+				.stream()
+				.map(s -> (Class<?>) s)
+				.filter(s -> exclude.isEmpty() || !exclude.contains(s))
+				.filter(s -> include.isEmpty() || include.contains(s))
+				.filter(s -> !Modifier.isAbstract(s.getModifiers()))
+				.filter(s -> s.getAnnotation(Configuration.class) != null)
+				.sorted(new ChainComparator<Type>().lesserFirst(Type::getTypeName).build())
+				.map(s -> {
+					final String name = ClassInfo.get(s).name;
+					if (subclassNames.contains(name))
+						throw new IllegalArgumentException(String.format(
+								"Specific type [%s] of polymorphic type [%s] is ambiguous.",
+								name,
+								target.type
+						));
+					subclassNames.add(name);
+					return s;
+				})
+				.collect(Collectors.toList());
+	}
+
 	/**
 	 * Walk a type.
 	 *
-	 * @param reflections
+	 * @param reflections May be null if all polymorphic types are in a type index.
 	 * @param root
 	 * @param visitor
 	 * @param <T>
@@ -270,99 +850,63 @@ public class Walk {
 	private static <T> T implementationForType(
 			final Context<T> context, final TypeInfo target
 	) {
-		if (target.type == String.class) {
-			return context.visitor.visitString(target.field);
-		} else if ((target.type == int.class) || (target.type == Integer.class)) {
-			return context.visitor.visitInteger(target.field);
-		} else if ((target.type == double.class) || (target.type == Double.class)) {
-			return context.visitor.visitDouble(target.field);
-		} else if ((target.type == boolean.class) || (target.type == Boolean.class)) {
-			return context.visitor.visitBoolean(target.field);
-		} else if (((Class<?>) target.type).isEnum()) {
-			return context.visitor.visitEnum(target.field, (Class<?>) target.type);
-		} else if (List.class.isAssignableFrom((Class<?>) target.type)) {
-			if (target.parameters == null)
-				throw new AssertionError("Unparameterized list!");
-			return context.visitor.visitList(target.field, implementationForType(context, target.parameters[0]));
-		} else if (java.util.Set.class.isAssignableFrom((Class<?>) target.type)) {
-			if (target.parameters == null)
-				throw new AssertionError("Unparameterized set!");
-			return context.visitor.visitSet(target.field, implementationForType(context, target.parameters[0]));
-		} else if (Map.class.isAssignableFrom((Class<?>) target.type)) {
-			if (target.parameters == null)
-				throw new AssertionError("Unparameterized map!");
-			if (target.parameters.length != 2)
-				throw new AssertionError("Map does not have exactly 2 parameters!");
-			if (target.parameters[0].type != String.class)
-				throw new AssertionError("Interfacable maps must have String keys.");
-			return context.visitor.visitMap(target.field, implementationForType(context, target.parameters[1]));
-		} else if (((Class<?>) target.type).getAnnotation(Configuration.class) != null) {
-			if (((Class<?>) target.type).isInterface() ||
-					Modifier.isAbstract(((Class<?>) target.type).getModifiers())) {
-				final java.util.Set<String> subclassNames = new HashSet<>();
-				final Set<Class<?>> exclude;
-				final Set<Class<?>> include;
-				if (target.field != null) {
-					final Configuration fieldConfig = target.field.getAnnotation(Configuration.class);
-					exclude = new HashSet<>(Arrays.asList(fieldConfig.exclude()));
-					include = new HashSet<>(Arrays.asList(fieldConfig.include()));
-				} else {
-					exclude = ImmutableSet.of();
-					include = ImmutableSet.of();
-				}
+		final ClassInfo info = ClassInfo.get((Class<?>) target.type);
+		switch (info.kind) {
+			case STRING:
+				return context.visitor.visitString(target.field);
+			case INTEGER:
+				return context.visitor.visitInteger(target.field);
+			case DOUBLE:
+				return context.visitor.visitDouble(target.field);
+			case BOOLEAN:
+				return context.visitor.visitBoolean(target.field);
+			case ENUM:
+				return context.visitor.visitEnum(target.field, info.klass);
+			case LIST:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized list!");
+				return context.visitor.visitList(target.field, implementationForType(context, target.parameters[0]));
+			case SET:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized set!");
+				return context.visitor.visitSet(target.field, implementationForType(context, target.parameters[0]));
+			case MAP:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized map!");
+				if (target.parameters.length != 2)
+					throw new AssertionError("Map does not have exactly 2 parameters!");
+				if (target.parameters[0].type != String.class)
+					throw new AssertionError("Interfacable maps must have String keys.");
+				return context.visitor.visitMap(target.field, implementationForType(context, target.parameters[1]));
+			case ABSTRACT:
 				return context.visitor.visitAbstract(
 						target.field,
-						(Class<?>) target.type,
-						Sets
-								.difference(
-										context.reflections.getSubTypesOf((Class<?>) target.type),
-										ImmutableSet.of(target)
-								)
+						info.klass,
+						derivedTypes(context.reflections, target)
 								.stream()
-								.map(s -> (Class<?>) s)
-								.filter(s -> exclude.isEmpty() || !exclude.contains(s))
-								.filter(s -> include.isEmpty() || include.contains(s))
-								.filter(s -> !Modifier.isAbstract(s.getModifiers()))
-								.filter(s -> s.getAnnotation(Configuration.class) != null)
-								.sorted(new ChainComparator<Type>().lesserFirst(Type::getTypeName).build())
-								.map(s -> {
-									String name = decideName(s);
-									if (subclassNames.contains(name))
-										throw new IllegalArgumentException(String.format(
-												"Specific type [%s] of polymorphic type [%s] is ambiguous.",
-												name,
-												target.type
-										));
-									subclassNames.add(name);
-									return new Pair<Class<?>, T>(
-											s,
-											(T) implementationForType(context, new TypeInfo(s))
-									);
-								})
+								.map(s -> new Pair<Class<?>, T>(s, implementationForType(context, TypeInfo.of(s))))
 								.collect(Collectors.toList())
 				);
-			} else {
-				try {
-					((Class<?>) target.type).getConstructor();
-				} catch (final NoSuchMethodException e) {
+			case CONCRETE: {
+				if (!info.constructible)
 					throw new AssertionError(String.format(
 							"Interface class [%s] has no nullary constructor or constructor is not public (maybe the class isn't static).",
 							target.type
 					));
-				}
-				if (!context.seen.contains(target.type)) {
-					context.seen.add((Class<?>) target.type);
+				if (!context.seen.contains(info.klass)) {
+					context.seen.add(info.klass);
 					context.visitor.visitConcrete(target.field,
-							(Class<?>) target.type,
-							getFields((Class<?>) target.type).map(f -> {
-								return new Pair<>(f, implementationForType(context, new TypeInfo(f)));
+							info.klass,
+							info.fields.stream().map(f -> {
+								return new Pair<>(f.field, implementationForType(context, f.type));
 							}).collect(Collectors.toList())
 					);
 				}
-				return context.visitor.visitConcreteShort(target.field, (Class<?>) target.type);
+				return context.visitor.visitConcreteShort(target.field, info.klass);
 			}
+			default:
+				return context.visitor.visitOther(target.field, info.klass);
 		}
-		return context.visitor.visitOther(target.field, (Class<?>) target.type);
 	}
 
 	/**
@@ -373,72 +917,117 @@ public class Walk {
 	 * @param visitor
 	 */
 	public static void walk(final TypeInfo target, final Object value, final ObjectVisitor visitor) {
-		if (target.type == String.class) {
-			visitor.visitString((String) value);
-		} else if ((target.type == int.class) || (target.type == Integer.class)) {
-			visitor.visitInteger((Integer) value);
-		} else if ((target.type == double.class) || (target.type == Double.class)) {
-			visitor.visitDouble((Double) value);
-		} else if ((target.type == boolean.class) || (target.type == Boolean.class)) {
-			visitor.visitBoolean((Boolean) value);
-		} else if (((Class<?>) target.type).isEnum()) {
-			visitor.visitEnum((Enum) value);
-		} else if (List.class.isAssignableFrom((Class<?>) target.type)) {
-			if (target.parameters == null)
-				throw new AssertionError("Unparameterized list!");
-			visitor.visitListStart((List) value);
-			for (final Object subvalue : (List<?>) value) {
-				walk(target.parameters[0], subvalue, visitor);
-			}
-			visitor.visitListEnd((List) value);
-		} else if (java.util.Set.class.isAssignableFrom((Class<?>) target.type)) {
-			if (target.parameters == null)
-				throw new AssertionError("Unparameterized set!");
-			visitor.visitSetStart((Set) value);
-			for (final Object subvalue : (Set<?>) value) {
-				walk(target.parameters[0], subvalue, visitor);
-			}
-			visitor.visitSetEnd((Set) value);
-		} else if (Map.class.isAssignableFrom((Class<?>) target.type)) {
-			if (target.parameters == null)
-				throw new AssertionError("Unparameterized map!");
-			if (target.parameters[0].type != String.class)
-				throw new AssertionError("Interfacable maps must have String keys.");
-			visitor.visitMapStart((Map) value);
-			for (final Map.Entry<String, ?> subvalue : ((Map<String, ?>) value).entrySet()) {
-				visitor.visitKeyBegin(subvalue.getKey());
-				walk(target.parameters[1], subvalue.getValue(), visitor);
-				visitor.visitKeyEnd(subvalue.getKey());
-			}
-			visitor.visitMapEnd((Map) value);
-		} else if (((Class<?>) target.type).getAnnotation(Configuration.class) != null) {
-			if (((Class<?>) target.type).isInterface() ||
-					Modifier.isAbstract(((Class<?>) target.type).getModifiers())) {
-				final boolean enter = visitor.visitAbstractBegin((Class<?>) target.type, value);
+		final Flight.Walking flight = Flight.available ? Flight.recorder.walk("reflective", target) : null;
+		if (flight == null) {
+			walkValue(target, value, visitor);
+			return;
+		}
+		walkValue(target, value, flight.count(visitor));
+		flight.finish();
+	}
+
+	/**
+	 * {@link #walk(TypeInfo, Object, ObjectVisitor)} without recording a flight event, for walking values within
+	 * another walk.
+	 */
+	static void walkValue(final TypeInfo target, final Object value, final ObjectVisitor visitor) {
+		final ClassInfo info = ClassInfo.get((Class<?>) target.type);
+		switch (info.kind) {
+			case STRING:
+				visitor.visitString((String) value);
+				break;
+			case INTEGER:
+				visitor.visitInteger((Integer) value);
+				break;
+			case DOUBLE:
+				visitor.visitDouble((Double) value);
+				break;
+			case BOOLEAN:
+				visitor.visitBoolean((Boolean) value);
+				break;
+			case ENUM:
+				visitor.visitEnum((Enum) value);
+				break;
+			case LIST:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized list!");
+				visitor.visitListStart((List) value);
+				for (final Object subvalue : (List<?>) value) {
+					walkValue(target.parameters[0], subvalue, visitor);
+				}
+				visitor.visitListEnd((List) value);
+				break;
+			case SET:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized set!");
+				visitor.visitSetStart((Set) value);
+				for (final Object subvalue : (Set<?>) value) {
+					walkValue(target.parameters[0], subvalue, visitor);
+				}
+				visitor.visitSetEnd((Set) value);
+				break;
+			case MAP:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized map!");
+				if (target.parameters[0].type != String.class)
+					throw new AssertionError("Interfacable maps must have String keys.");
+				visitor.visitMapStart((Map) value);
+				for (final Map.Entry<String, ?> subvalue : ((Map<String, ?>) value).entrySet()) {
+					visitor.visitKeyBegin(subvalue.getKey());
+					walkValue(target.parameters[1], subvalue.getValue(), visitor);
+					visitor.visitKeyEnd(subvalue.getKey());
+				}
+				visitor.visitMapEnd((Map) value);
+				break;
+			case ABSTRACT: {
+				final boolean enter = visitor.visitAbstractBegin(info.klass, value);
 				if (enter) {
-					walk(new TypeInfo(value.getClass()), value, visitor);
-					visitor.visitAbstractEnd((Class<?>) target.type, value);
+					walkValue(TypeInfo.of(value.getClass()), value, visitor);
+					visitor.visitAbstractEnd(info.klass, value);
 				}
-			} else {
-				final boolean enter = visitor.visitConcreteBegin((Class<?>) target.type, value);
+				break;
+			}
+			case CONCRETE: {
+				final boolean enter = visitor.visitConcreteBegin(info.klass, value);
 				if (enter) {
-					getFields((Class<?>) target.type).forEach(field -> {
-						final Object subvalue = uncheck(() -> {
-							try {
-								return ((Class<?>) target.type).getMethod(field.getName()).invoke(value);
-							} catch (final NoSuchMethodException e) {
-								return field.get(value);
-							}
-						});
-						visitor.visitFieldBegin(field, subvalue);
-						walk(new TypeInfo(field), subvalue, visitor);
-						visitor.visitFieldEnd(field, subvalue);
-					});
-					visitor.visitConcreteEnd((Class<?>) target.type, value);
+					final boolean boxed = visitor.wantsFieldValues();
+					for (final FieldInfo field : info.fields) {
+						if (field.primitive && !boxed) {
+							visitor.visitFieldBegin(field.field, null);
+							field.visitPrimitive(value, visitor);
+							visitor.visitFieldEnd(field.field, null);
+							continue;
+						}
+						final Object subvalue = field.get(value);
+						visitor.visitFieldBegin(field.field, subvalue);
+						walkValue(field.type, subvalue, visitor);
+						visitor.visitFieldEnd(field.field, subvalue);
+					}
+					visitor.visitConcreteEnd(info.klass, value);
 				}
+				break;
 			}
-		} else
-			visitor.visitOther(value);
+			default:
+				visitor.visitOther(value);
+		}
+	}
+
+	/**
+	 * Walk an object using a walker specialized for the type.  Makes the same visitor calls as
+	 * {@link #walk(TypeInfo, Object, ObjectVisitor)}.
+	 *
+	 * @param target
+	 * @param value
+	 * @param visitor
+	 */
+	public static void walkCompiled(final TypeInfo target, final Object value, final ObjectVisitor visitor) {
+		final Flight.Walking flight = Flight.available ? Flight.recorder.walk("compiled", target) : null;
+		if (flight == null) {
+			WalkCompiler.compile(target).walk(value, visitor);
+			return;
+		}
+		WalkCompiler.compile(target).walk(value, flight.count(visitor));
+		flight.finish();
 	}
 
 	public static class DefaultVisitor<T> implements Visitor<T> {
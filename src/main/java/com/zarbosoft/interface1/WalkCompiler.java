@@ -0,0 +1,191 @@
+package com.zarbosoft.interface1;
+
+import com.google.common.cache.CacheBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Builds object walkers specialized for a type.  A compiled walker makes the same ObjectVisitor calls as
+ * {@link Walk#walk(Walk.TypeInfo, Object, Walk.ObjectVisitor)} but the type dispatch, field lists and accessors are
+ * resolved once when it's built rather than for every value.  Concrete types get a generated class (see
+ * {@link WalkGenerator}) when javassist is available.
+ */
+public class WalkCompiler {
+	/**
+	 * False if javassist isn't on the classpath, in which case concrete types use {@link ConcreteWriter}.
+	 */
+	private static final boolean generate = detect();
+
+	/**
+	 * Keyed weakly on canonical TypeInfos, so entries go when their TypeInfo is no longer interned.  Writers mustn't
+	 * refer to their own key.
+	 */
+	private static final ConcurrentMap<Walk.TypeInfo, Writer> writers =
+			CacheBuilder.newBuilder().weakKeys().<Walk.TypeInfo, Writer>build().asMap();
+	private static final ClassValue<Writer> concreteWriters = new ClassValue<Writer>() {
+		@Override
+		protected Writer computeValue(final Class<?> type) {
+			final Walk.ClassInfo info = Walk.ClassInfo.get(type);
+			final Writer[] fields = new Writer[info.fields.size()];
+			for (int i = 0; i < fields.length; ++i)
+				fields[i] = compile(info.fields.get(i).type);
+			if (generate)
+				return WalkGenerator.generate(info, fields);
+			return new ConcreteWriter(info, fields);
+		}
+	};
+	private static final ClassValue<Writer> classWriters = new ClassValue<Writer>() {
+		@Override
+		protected Writer computeValue(final Class<?> type) {
+			return compile(Walk.TypeInfo.of(type));
+		}
+	};
+
+	private static boolean detect() {
+		try {
+			Class.forName("javassist.ClassPool", false, WalkCompiler.class.getClassLoader());
+			return true;
+		} catch (final ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Walks values of a single type.
+	 */
+	public interface Writer {
+		void walk(Object value, Walk.ObjectVisitor visitor);
+	}
+
+	/**
+	 * Get the walker for a type, building it if this is the first request.
+	 *
+	 * @param target
+	 * @return
+	 */
+	public static Writer compile(final Walk.TypeInfo target) {
+		final Walk.TypeInfo key = Walk.TypeInfo.canonical(target);
+		final Writer found = writers.get(key);
+		if (found != null)
+			return found;
+		final Writer created = build(key);
+		final Writer raced = writers.putIfAbsent(key, created);
+		return raced == null ? created : raced;
+	}
+
+	private static Writer build(final Walk.TypeInfo target) {
+		final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) target.type);
+		switch (info.kind) {
+			case STRING:
+				return (value, visitor) -> visitor.visitString((String) value);
+			case INTEGER:
+				return (value, visitor) -> visitor.visitInteger((Integer) value);
+			case DOUBLE:
+				return (value, visitor) -> visitor.visitDouble((Double) value);
+			case BOOLEAN:
+				return (value, visitor) -> visitor.visitBoolean((Boolean) value);
+			case ENUM:
+				return (value, visitor) -> visitor.visitEnum((Enum) value);
+			case LIST: {
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized list!");
+				final Writer inner = compile(target.parameters[0]);
+				return (value, visitor) -> {
+					visitor.visitListStart((List) value);
+					for (final Object subvalue : (List<?>) value)
+						inner.walk(subvalue, visitor);
+					visitor.visitListEnd((List) value);
+				};
+			}
+			case SET: {
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized set!");
+				final Writer inner = compile(target.parameters[0]);
+				return (value, visitor) -> {
+					visitor.visitSetStart((Set) value);
+					for (final Object subvalue : (Set<?>) value)
+						inner.walk(subvalue, visitor);
+					visitor.visitSetEnd((Set) value);
+				};
+			}
+			case MAP: {
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized map!");
+				if (target.parameters[0].type != String.class)
+					throw new AssertionError("Interfacable maps must have String keys.");
+				final Writer inner = compile(target.parameters[1]);
+				return (value, visitor) -> {
+					visitor.visitMapStart((Map) value);
+					for (final Map.Entry<String, ?> subvalue : ((Map<String, ?>) value).entrySet()) {
+						visitor.visitKeyBegin(subvalue.getKey());
+						inner.walk(subvalue.getValue(), visitor);
+						visitor.visitKeyEnd(subvalue.getKey());
+					}
+					visitor.visitMapEnd((Map) value);
+				};
+			}
+			case ABSTRACT: {
+				final Class<?> klass = info.klass;
+				return (value, visitor) -> {
+					if (visitor.visitAbstractBegin(klass, value)) {
+						classWriters.get(value.getClass()).walk(value, visitor);
+						visitor.visitAbstractEnd(klass, value);
+					}
+				};
+			}
+			case CONCRETE:
+				// Resolved on first use so recursive types don't recurse while compiling
+				return new Writer() {
+					private Writer resolved;
+
+					@Override
+					public void walk(final Object value, final Walk.ObjectVisitor visitor) {
+						if (resolved == null)
+							resolved = concreteWriters.get(info.klass);
+						resolved.walk(value, visitor);
+					}
+				};
+			default:
+				return (value, visitor) -> visitor.visitOther(value);
+		}
+	}
+
+	/**
+	 * Used when javassist isn't available.
+	 */
+	private static class ConcreteWriter implements Writer {
+		private final Class<?> klass;
+		private final Walk.FieldInfo[] fields;
+		private final Writer[] writers;
+
+		private ConcreteWriter(final Walk.ClassInfo info, final Writer[] writers) {
+			this.klass = info.klass;
+			this.fields = info.fields.toArray(new Walk.FieldInfo[0]);
+			this.writers = writers;
+		}
+
+		@Override
+		public void walk(final Object value, final Walk.ObjectVisitor visitor) {
+			if (!visitor.visitConcreteBegin(klass, value))
+				return;
+			final boolean boxed = visitor.wantsFieldValues();
+			for (int i = 0; i < fields.length; ++i) {
+				final Walk.FieldInfo field = fields[i];
+				if (field.primitive && !boxed) {
+					visitor.visitFieldBegin(field.field, null);
+					field.visitPrimitive(value, visitor);
+					visitor.visitFieldEnd(field.field, null);
+					continue;
+				}
+				final Object subvalue = field.get(value);
+				visitor.visitFieldBegin(field.field, subvalue);
+				writers[i].walk(subvalue, visitor);
+				visitor.visitFieldEnd(field.field, subvalue);
+			}
+			visitor.visitConcreteEnd(klass, value);
+		}
+	}
+}
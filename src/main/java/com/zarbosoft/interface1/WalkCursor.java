@@ -0,0 +1,309 @@
+package com.zarbosoft.interface1;
+
+import com.zarbosoft.interface1.events.*;
+import com.zarbosoft.rendaw.common.Pair;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Produces the events for an object one at a time as they're requested, the pull counterpart of
+ * {@link Walk#walk(Walk.TypeInfo, Object, Walk.ObjectVisitor)}.  The position in the object is kept on an explicit
+ * stack so the consumer can stop between any two events (for instance while an output buffer drains) and resume
+ * later from any thread, without buffering the remaining events.
+ * <p>
+ * Null fields are omitted.  The object must not be modified until all events are read.  Not thread safe.
+ */
+public class WalkCursor implements InterfaceEventCursor {
+	private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+	private InterfaceEventKind kind;
+
+	/**
+	 * The text of the current key or type, or the current primitive as a String, Integer, Double or Boolean, or the
+	 * value of an other event.
+	 */
+	private Object value;
+
+	/**
+	 * @param target The type of the object, as for {@link Walk#walk(Walk.TypeInfo, Object, Walk.ObjectVisitor)}.
+	 * @param value
+	 */
+	public WalkCursor(final Walk.TypeInfo target, final Object value) {
+		stack.push(new ValueFrame(target, value));
+	}
+
+	@Override
+	public boolean next() {
+		while (!stack.isEmpty()) {
+			if (stack.peek().next(this))
+				return true;
+		}
+		kind = null;
+		value = null;
+		return false;
+	}
+
+	@Override
+	public InterfaceEventKind kind() {
+		return kind;
+	}
+
+	@Override
+	public String stringValue() {
+		return value.toString();
+	}
+
+	@Override
+	public Object otherValue() {
+		return value;
+	}
+
+	@Override
+	public int intValue() {
+		if (value instanceof Integer)
+			return (Integer) value;
+		return InterfaceEventCursor.super.intValue();
+	}
+
+	@Override
+	public long longValue() {
+		if (value instanceof Integer)
+			return (Integer) value;
+		return InterfaceEventCursor.super.longValue();
+	}
+
+	@Override
+	public double doubleValue() {
+		if (value instanceof Double)
+			return (Double) value;
+		if (value instanceof Integer)
+			return (Integer) value;
+		return InterfaceEventCursor.super.doubleValue();
+	}
+
+	@Override
+	public boolean booleanValue() {
+		if (value instanceof Boolean)
+			return (Boolean) value;
+		return InterfaceEventCursor.super.booleanValue();
+	}
+
+	@Override
+	public Object position() {
+		return null;
+	}
+
+	/**
+	 * The remaining events as objects, for consumers that don't take cursors such as the grammar engine.  Events are
+	 * produced as the stream is consumed.
+	 *
+	 * @return
+	 */
+	public Stream<Pair<? extends InterfaceEvent, Object>> events() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<Pair<? extends InterfaceEvent, Object>>() {
+			private boolean advanced = false;
+			private boolean more;
+
+			@Override
+			public boolean hasNext() {
+				if (!advanced) {
+					more = WalkCursor.this.next();
+					advanced = true;
+				}
+				return more;
+			}
+
+			@Override
+			public Pair<? extends InterfaceEvent, Object> next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				advanced = false;
+				return new Pair<>(event(), null);
+			}
+		}, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	private InterfaceEvent event() {
+		switch (kind) {
+			case OBJECT_OPEN:
+				return new InterfaceObjectOpenEvent();
+			case OBJECT_CLOSE:
+				return new InterfaceObjectCloseEvent();
+			case ARRAY_OPEN:
+				return new InterfaceArrayOpenEvent();
+			case ARRAY_CLOSE:
+				return new InterfaceArrayCloseEvent();
+			case KEY:
+				return new InterfaceKeyEvent((String) value);
+			case TYPE:
+				return new InterfaceTypeEvent((String) value);
+			case PRIMITIVE:
+				if (value instanceof Integer)
+					return new InterfaceIntEvent((Integer) value);
+				if (value instanceof Double)
+					return new InterfaceDoubleEvent((Double) value);
+				if (value instanceof Boolean)
+					return new InterfaceBooleanEvent((Boolean) value);
+				return new InterfacePrimitiveEvent((String) value);
+			case OTHER:
+				return new InterfaceOtherEvent(value);
+			default:
+				throw new AssertionError();
+		}
+	}
+
+	private boolean emit(final InterfaceEventKind kind, final Object value) {
+		this.kind = kind;
+		this.value = value;
+		return true;
+	}
+
+	private abstract static class Frame {
+		/**
+		 * Produce the next event or change the stack.
+		 *
+		 * @param cursor
+		 * @return True if an event was produced.
+		 */
+		abstract boolean next(WalkCursor cursor);
+	}
+
+	/**
+	 * A value that hasn't been started.
+	 */
+	private static class ValueFrame extends Frame {
+		private final Walk.TypeInfo target;
+		private final Object value;
+
+		private ValueFrame(final Walk.TypeInfo target, final Object value) {
+			this.target = target;
+			this.value = value;
+		}
+
+		@Override
+		boolean next(final WalkCursor cursor) {
+			cursor.stack.pop();
+			final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) target.type);
+			switch (info.kind) {
+				case STRING:
+				case INTEGER:
+				case DOUBLE:
+				case BOOLEAN:
+					return cursor.emit(InterfaceEventKind.PRIMITIVE, value);
+				case ENUM:
+					return cursor.emit(InterfaceEventKind.PRIMITIVE, info.enumNames[((Enum<?>) value).ordinal()]);
+				case LIST:
+					if (target.parameters == null)
+						throw new AssertionError("Unparameterized list!");
+					cursor.stack.push(new CollectionFrame(target.parameters[0], ((List<?>) value).iterator()));
+					return cursor.emit(InterfaceEventKind.ARRAY_OPEN, null);
+				case SET:
+					if (target.parameters == null)
+						throw new AssertionError("Unparameterized set!");
+					cursor.stack.push(new CollectionFrame(target.parameters[0], ((Set<?>) value).iterator()));
+					return cursor.emit(InterfaceEventKind.ARRAY_OPEN, null);
+				case MAP:
+					if (target.parameters == null)
+						throw new AssertionError("Unparameterized map!");
+					if (target.parameters[0].type != String.class)
+						throw new AssertionError("Interfacable maps must have String keys.");
+					cursor.stack.push(new MapFrame(target.parameters[1], ((Map<String, ?>) value).entrySet().iterator()));
+					return cursor.emit(InterfaceEventKind.OBJECT_OPEN, null);
+				case ABSTRACT:
+					cursor.stack.push(new ValueFrame(Walk.TypeInfo.of(value.getClass()), value));
+					return cursor.emit(InterfaceEventKind.TYPE,
+							Walk.ClassInfo.get(value.getClass()).name.toLowerCase()
+					);
+				case CONCRETE:
+					cursor.stack.push(new ObjectFrame(info, value));
+					return cursor.emit(InterfaceEventKind.OBJECT_OPEN, null);
+				default:
+					return cursor.emit(InterfaceEventKind.OTHER, value);
+			}
+		}
+	}
+
+	private static class CollectionFrame extends Frame {
+		private final Walk.TypeInfo inner;
+		private final Iterator<?> iterator;
+
+		private CollectionFrame(final Walk.TypeInfo inner, final Iterator<?> iterator) {
+			this.inner = inner;
+			this.iterator = iterator;
+		}
+
+		@Override
+		boolean next(final WalkCursor cursor) {
+			if (iterator.hasNext()) {
+				cursor.stack.push(new ValueFrame(inner, iterator.next()));
+				return false;
+			}
+			cursor.stack.pop();
+			return cursor.emit(InterfaceEventKind.ARRAY_CLOSE, null);
+		}
+	}
+
+	private static class MapFrame extends Frame {
+		private final Walk.TypeInfo inner;
+		private final Iterator<? extends Map.Entry<String, ?>> iterator;
+
+		/**
+		 * The entry whose key was the last event, or null.
+		 */
+		private Map.Entry<String, ?> entry;
+
+		private MapFrame(final Walk.TypeInfo inner, final Iterator<? extends Map.Entry<String, ?>> iterator) {
+			this.inner = inner;
+			this.iterator = iterator;
+		}
+
+		@Override
+		boolean next(final WalkCursor cursor) {
+			if (entry != null) {
+				cursor.stack.push(new ValueFrame(inner, entry.getValue()));
+				entry = null;
+				return false;
+			}
+			if (iterator.hasNext()) {
+				entry = iterator.next();
+				return cursor.emit(InterfaceEventKind.KEY, entry.getKey());
+			}
+			cursor.stack.pop();
+			return cursor.emit(InterfaceEventKind.OBJECT_CLOSE, null);
+		}
+	}
+
+	private static class ObjectFrame extends Frame {
+		private final Walk.ClassInfo info;
+		private final Object value;
+		private int index = 0;
+
+		/**
+		 * The value of the field whose key was the last event, or null.
+		 */
+		private Object field;
+
+		private ObjectFrame(final Walk.ClassInfo info, final Object value) {
+			this.info = info;
+			this.value = value;
+		}
+
+		@Override
+		boolean next(final WalkCursor cursor) {
+			if (field != null) {
+				cursor.stack.push(new ValueFrame(info.fields.get(index - 1).type, field));
+				field = null;
+				return false;
+			}
+			while (index < info.fields.size()) {
+				final Walk.FieldInfo next = info.fields.get(index++);
+				field = next.get(value);
+				if (field != null)
+					return cursor.emit(InterfaceEventKind.KEY, next.name);
+			}
+			cursor.stack.pop();
+			return cursor.emit(InterfaceEventKind.OBJECT_CLOSE, null);
+		}
+	}
+}
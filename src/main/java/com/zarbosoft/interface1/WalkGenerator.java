@@ -0,0 +1,201 @@
+package com.zarbosoft.interface1;
+
+import javassist.CannotCompileException;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import javassist.bytecode.ClassFile;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a {@link WalkCompiler.Writer} class for a concrete type with javassist.  Public fields and getters are
+ * read directly rather than through method handles, strings, enums and primitives are passed straight to the
+ * visitor, and every field has its own call site for its element writer.
+ * <p>
+ * Each class is defined in its own class loader, a child of the model class's loader, so it can be unloaded with
+ * the model.
+ */
+class WalkGenerator {
+	private static final AtomicInteger count = new AtomicInteger();
+	private static final String writerName = WalkCompiler.Writer.class.getName();
+	private static final String visitorName = Walk.ObjectVisitor.class.getName();
+	private static final String fieldInfoName = Walk.FieldInfo.class.getName();
+
+	/**
+	 * Only call this if javassist is available.
+	 *
+	 * @param info
+	 * @param writers The writer for each field's type, in the order of {@link Walk.ClassInfo#fields}.
+	 * @return
+	 */
+	static WalkCompiler.Writer generate(final Walk.ClassInfo info, final WalkCompiler.Writer[] writers) {
+		try {
+			return build(info, writers);
+		} catch (final NotFoundException | CannotCompileException | IOException | ReflectiveOperationException e) {
+			throw new AssertionError(String.format("Failed to generate walker for [%s].", info.klass), e);
+		}
+	}
+
+	private static WalkCompiler.Writer build(final Walk.ClassInfo info, final WalkCompiler.Writer[] writers)
+			throws NotFoundException, CannotCompileException, IOException, ReflectiveOperationException {
+		final Class<?> klass = info.klass;
+		final ClassLoader parent =
+				klass.getClassLoader() == null ? WalkGenerator.class.getClassLoader() : klass.getClassLoader();
+		final ClassPool pool = new ClassPool(true);
+		pool.appendClassPath(new LoaderClassPath(parent));
+		pool.appendClassPath(new ClassClassPath(WalkGenerator.class));
+
+		final String name = String.format("com.zarbosoft.interface1.generated.Walker%s", count.incrementAndGet());
+		final CtClass generated = pool.makeClass(name);
+		// Java 5 class files are verified without stack map frames, which javassist doesn't always produce
+		generated.getClassFile().setMajorVersion(ClassFile.JAVA_5);
+		generated.addInterface(pool.get(writerName));
+		generated.addField(CtField.make("public Class klass;", generated));
+		generated.addField(CtField.make(String.format("public %s[] fields;", fieldInfoName), generated));
+		generated.addField(CtField.make("public java.lang.reflect.Field[] reflected;", generated));
+		generated.addField(CtField.make(String.format("public %s[] writers;", writerName), generated));
+		generated.addMethod(CtNewMethod.make(source(info), generated));
+
+		final byte[] code = generated.toBytecode();
+		generated.detach();
+		final Class<?> defined = new Loader(parent).define(name, code);
+		final Object out = defined.getConstructor().newInstance();
+		final Field[] reflected = new Field[info.fields.size()];
+		for (int i = 0; i < reflected.length; ++i)
+			reflected[i] = info.fields.get(i).field;
+		defined.getField("klass").set(out, klass);
+		defined.getField("fields").set(out, info.fields.toArray(new Walk.FieldInfo[0]));
+		defined.getField("reflected").set(out, reflected);
+		defined.getField("writers").set(out, writers);
+		return (WalkCompiler.Writer) out;
+	}
+
+	private static String source(final Walk.ClassInfo info) {
+		final StringBuilder out = new StringBuilder();
+		out.append(String.format("public void walk(Object value, %s visitor) {\n", visitorName));
+		out.append("if (!visitor.visitConcreteBegin(klass, value)) return;\n");
+		out.append("boolean boxed = visitor.wantsFieldValues();\n");
+		for (int i = 0; i < info.fields.size(); ++i) {
+			final Walk.FieldInfo field = info.fields.get(i);
+			final String read = read(field);
+			out.append("{\n");
+			if (field.primitive) {
+				final Class<?> type = field.field.getType();
+				final String box;
+				final String unboxed;
+				if (type == int.class) {
+					box = "Integer";
+					unboxed = "visitInt";
+				} else if (type == double.class) {
+					box = "Double";
+					unboxed = "visitDouble";
+				} else {
+					box = "Boolean";
+					unboxed = "visitBoolean";
+				}
+				out.append("if (boxed) {\n");
+				if (read == null)
+					out.append(String.format("%1$s s = (%1$s) fields[%2$s].get(value);\n", box, i));
+				else
+					out.append(String.format("%1$s s = %1$s.valueOf(%2$s);\n", box, read));
+				out.append(String.format("visitor.visitFieldBegin(reflected[%s], s);\n", i));
+				out.append(String.format("visitor.visit%s(s);\n", box));
+				out.append(String.format("visitor.visitFieldEnd(reflected[%s], s);\n", i));
+				out.append("} else {\n");
+				out.append(String.format("visitor.visitFieldBegin(reflected[%s], null);\n", i));
+				if (read == null)
+					out.append(String.format("fields[%s].visitPrimitive(value, visitor);\n", i));
+				else
+					out.append(String.format("visitor.%s(%s);\n", unboxed, read));
+				out.append(String.format("visitor.visitFieldEnd(reflected[%s], null);\n", i));
+				out.append("}\n");
+			} else {
+				if (read == null)
+					out.append(String.format("Object s = fields[%s].get(value);\n", i));
+				else
+					out.append(String.format("Object s = %s;\n", read));
+				out.append(String.format("visitor.visitFieldBegin(reflected[%s], s);\n", i));
+				switch (Walk.ClassInfo.get((Class<?>) field.type.type).kind) {
+					case STRING:
+						out.append("visitor.visitString((String) s);\n");
+						break;
+					case INTEGER:
+						out.append("visitor.visitInteger((Integer) s);\n");
+						break;
+					case DOUBLE:
+						out.append("visitor.visitDouble((Double) s);\n");
+						break;
+					case BOOLEAN:
+						out.append("visitor.visitBoolean((Boolean) s);\n");
+						break;
+					case ENUM:
+						out.append("visitor.visitEnum((Enum) s);\n");
+						break;
+					default:
+						out.append(String.format("writers[%s].walk(s, visitor);\n", i));
+				}
+				out.append(String.format("visitor.visitFieldEnd(reflected[%s], s);\n", i));
+			}
+			out.append("}\n");
+		}
+		out.append("visitor.visitConcreteEnd(klass, value);\n");
+		out.append("}\n");
+		return out.toString();
+	}
+
+	/**
+	 * @param field
+	 * @return An expression reading the field from {@code value} without reflection, or null if it isn't
+	 * accessible from another package.
+	 */
+	private static String read(final Walk.FieldInfo field) {
+		final Method getter = field.getter;
+		if (getter != null) {
+			if (!Modifier.isPublic(getter.getModifiers()) || !accessible(getter.getDeclaringClass()))
+				return null;
+			return String.format("((%s) value).%s()", getter.getDeclaringClass().getName(), getter.getName());
+		}
+		if (!Modifier.isPublic(field.field.getModifiers()) || !accessible(field.field.getDeclaringClass()))
+			return null;
+		return String.format("((%s) value).%s", field.field.getDeclaringClass().getName(), field.field.getName());
+	}
+
+	/**
+	 * @param klass
+	 * @return True if the class can be named from another package.
+	 */
+	private static boolean accessible(final Class<?> klass) {
+		for (Class<?> at = klass; at != null; at = at.getEnclosingClass()) {
+			if (!Modifier.isPublic(at.getModifiers()))
+				return false;
+		}
+		return true;
+	}
+
+	private static class Loader extends ClassLoader {
+		private Loader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		/**
+		 * The model's loader may not see this library.
+		 */
+		@Override
+		protected Class<?> findClass(final String name) throws ClassNotFoundException {
+			return WalkGenerator.class.getClassLoader().loadClass(name);
+		}
+
+		private Class<?> define(final String name, final byte[] code) {
+			return defineClass(name, code, 0, code.length);
+		}
+	}
+}
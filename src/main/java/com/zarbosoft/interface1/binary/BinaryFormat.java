@@ -0,0 +1,161 @@
+package com.zarbosoft.interface1.binary;
+
+import com.zarbosoft.interface1.GrammarCache;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.rendaw.common.Pair;
+import org.reflections.Reflections;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * A compact binary encoding of InterfaceEvents.
+ * <p>
+ * A stream starts with a header: the magic bytes {@code IFB}, a version byte and the 8 byte fingerprint of the root
+ * type (see {@link #fingerprint(Reflections, Walk.TypeInfo)}).  Each event is a tag byte followed by its payload:
+ * <ul>
+ * <li>Object and array opens and closes have no payload.</li>
+ * <li>Keys and type names are a varint reference to the stream's name table.  0 means a new name follows as a
+ * string and is added to the table; otherwise the reference is the index of an earlier name plus one.</li>
+ * <li>Strings are a varint byte length followed by UTF-8.</li>
+ * <li>Ints and longs are zigzag varints, doubles are 8 bytes big endian and booleans are a tag each.</li>
+ * </ul>
+ * Varints are unsigned LEB128.  Multi-byte values are big endian.
+ */
+public class BinaryFormat {
+	static final byte[] magic = new byte[] {'I', 'F', 'B'};
+	static final byte version = 1;
+	static final int headerSize = magic.length + 1 + 8;
+
+	static final byte OBJECT_OPEN = 1;
+	static final byte OBJECT_CLOSE = 2;
+	static final byte ARRAY_OPEN = 3;
+	static final byte ARRAY_CLOSE = 4;
+	static final byte KEY = 5;
+	static final byte TYPE = 6;
+	static final byte STRING = 7;
+	static final byte INT = 8;
+	static final byte LONG = 9;
+	static final byte DOUBLE = 10;
+	static final byte TRUE = 11;
+	static final byte FALSE = 12;
+
+	/**
+	 * Fingerprints by root type.
+	 */
+	public static final GrammarCache<Long> fingerprints = new GrammarCache<>(64, BinaryFormat::computeFingerprint);
+
+	/**
+	 * A hash of everything about a type that affects its events: serialized type, field and enum value names,
+	 * whether fields are required and the subtypes of polymorphic types.  Writers and readers of the same model
+	 * agree on the fingerprint; readers reject streams with a different one.
+	 *
+	 * @param reflections May be null if all polymorphic types are indexed.
+	 * @param root
+	 * @return
+	 */
+	public static long fingerprint(final Reflections reflections, final Walk.TypeInfo root) {
+		return fingerprints.get(reflections, root);
+	}
+
+	private static long computeFingerprint(final Reflections reflections, final Walk.TypeInfo root) {
+		final Map<String, String> concretes = new TreeMap<>();
+		final StringBuilder description = new StringBuilder();
+		description.append(Walk.walk(reflections, root, new Walk.Visitor<String>() {
+			@Override
+			public String visitString(final Field field) {
+				return "string";
+			}
+
+			@Override
+			public String visitInteger(final Field field) {
+				return "int";
+			}
+
+			@Override
+			public String visitDouble(final Field field) {
+				return "double";
+			}
+
+			@Override
+			public String visitBoolean(final Field field) {
+				return "boolean";
+			}
+
+			@Override
+			public String visitEnum(final Field field, final Class<?> enumClass) {
+				return String.format("enum(%s)", String.join(",", Walk.ClassInfo.get(enumClass).enumNames));
+			}
+
+			@Override
+			public String visitList(final Field field, final String inner) {
+				return String.format("list(%s)", inner);
+			}
+
+			@Override
+			public String visitSet(final Field field, final String inner) {
+				return String.format("set(%s)", inner);
+			}
+
+			@Override
+			public String visitMap(final Field field, final String inner) {
+				return String.format("map(%s)", inner);
+			}
+
+			@Override
+			public String visitAbstract(
+					final Field field, final Class<?> klass, final List<Pair<Class<?>, String>> derived
+			) {
+				return String.format("abstract(%s)",
+						derived
+								.stream()
+								.map(p -> String.format("%s:%s",
+										Walk.ClassInfo.get(p.first).name.toLowerCase(),
+										p.second
+								))
+								.collect(Collectors.joining(","))
+				);
+			}
+
+			@Override
+			public String visitConcreteShort(final Field field, final Class<?> klass) {
+				return klass.getName();
+			}
+
+			@Override
+			public void visitConcrete(
+					final Field field, final Class<?> klass, final List<Pair<Field, String>> fields
+			) {
+				final Walk.ClassInfo info = Walk.ClassInfo.get(klass);
+				final StringBuilder out = new StringBuilder();
+				for (int i = 0; i < fields.size(); ++i) {
+					final Walk.FieldInfo fieldInfo = info.fields.get(i);
+					out
+							.append(fieldInfo.name)
+							.append(fieldInfo.required ? "!" : "?")
+							.append(fields.get(i).second)
+							.append(";");
+				}
+				concretes.put(klass.getName(), out.toString());
+			}
+
+			@Override
+			public String visitOther(final Field field, final Class<?> otherClass) {
+				return String.format("other(%s)", otherClass.getName());
+			}
+		}));
+		for (final Map.Entry<String, String> concrete : concretes.entrySet())
+			description.append('\n').append(concrete.getKey()).append('{').append(concrete.getValue()).append('}');
+		// 64 bit FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (final byte b : description.toString().getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+}
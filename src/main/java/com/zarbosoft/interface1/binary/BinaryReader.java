@@ -0,0 +1,442 @@
+package com.zarbosoft.interface1.binary;
+
+import com.zarbosoft.interface1.Events;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.events.*;
+import com.zarbosoft.interface1.path.InterfaceRootPath;
+import com.zarbosoft.rendaw.common.Pair;
+import org.reflections.Reflections;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * Reads events in the {@link BinaryFormat}.  As a cursor it can be passed straight to
+ * {@link Events#parse(Reflections, Walk.TypeInfo, InterfaceEventCursor)}: numbers and booleans are read into
+ * primitive fields without formatting them as text, and keys and type names are shared through the stream's name
+ * table.  Positions are byte offsets from the start of the header.
+ * <p>
+ * The header is checked when the reader is created, so a stream written for a different model fails before any
+ * events are read.  Channels must be blocking.  Not thread safe.
+ */
+public class BinaryReader implements InterfaceEventCursor {
+	private final ReadableByteChannel channel;
+	private ByteBuffer buffer;
+
+	/**
+	 * The stream offset of the start of the buffer.
+	 */
+	private long base;
+
+	private final List<String> names = new ArrayList<>();
+	private byte[] scratch = new byte[0];
+
+	private long position;
+	private byte tag;
+	private InterfaceEventKind kind;
+	private String string;
+	private long number;
+	private double real;
+
+	/**
+	 * Read from a buffer, starting at its position.
+	 *
+	 * @param buffer
+	 * @param fingerprint The fingerprint of the expected root type.
+	 * @throws InvalidEventStream If the header is invalid or the fingerprint doesn't match.
+	 */
+	public BinaryReader(final ByteBuffer buffer, final long fingerprint) {
+		this(null, buffer, -buffer.position());
+		header(fingerprint);
+	}
+
+	/**
+	 * Read from a channel through a buffer.  The buffer grows if a string doesn't fit.
+	 *
+	 * @param channel
+	 * @param fingerprint The fingerprint of the expected root type.
+	 * @param bufferSize
+	 * @throws InvalidEventStream If the header is invalid or the fingerprint doesn't match.
+	 */
+	public BinaryReader(final ReadableByteChannel channel, final long fingerprint, final int bufferSize) {
+		this(channel, allocate(bufferSize), 0);
+		header(fingerprint);
+	}
+
+	public BinaryReader(final ReadableByteChannel channel, final long fingerprint) {
+		this(channel, fingerprint, 64 * 1024);
+	}
+
+	private BinaryReader(final ReadableByteChannel channel, final ByteBuffer buffer, final long base) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.base = base;
+	}
+
+	/**
+	 * Read events without a header.
+	 *
+	 * @param buffer Positioned at the first event and limited to the last.
+	 * @param offset The offset of the buffer's position in the source, for error messages.
+	 * @return
+	 */
+	static BinaryReader headerless(final ByteBuffer buffer, final long offset) {
+		return new BinaryReader(null, buffer, offset - buffer.position());
+	}
+
+	/**
+	 * @param bufferSize
+	 * @return An empty buffer ready to read from.
+	 */
+	private static ByteBuffer allocate(final int bufferSize) {
+		if (bufferSize < BinaryFormat.headerSize)
+			throw new IllegalArgumentException(String.format("Buffer size must be at least %s.",
+					BinaryFormat.headerSize
+			));
+		final ByteBuffer out = ByteBuffer.allocate(bufferSize);
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Read an object from a channel.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param channel
+	 * @param <T>         typeInfo
+	 * @return The deserialized object, or null if there were no events.
+	 */
+	public static <T> T read(
+			final Reflections reflections, final Walk.TypeInfo typeInfo, final ReadableByteChannel channel
+	) {
+		return Events.parse(reflections,
+				typeInfo,
+				new BinaryReader(channel, BinaryFormat.fingerprint(reflections, typeInfo))
+		);
+	}
+
+	/**
+	 * Read an object from a buffer.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type to deserialize.
+	 * @param buffer
+	 * @param <T>         typeInfo
+	 * @return The deserialized object, or null if there were no events.
+	 */
+	public static <T> T read(final Reflections reflections, final Walk.TypeInfo typeInfo, final ByteBuffer buffer) {
+		return Events.parse(reflections,
+				typeInfo,
+				new BinaryReader(buffer, BinaryFormat.fingerprint(reflections, typeInfo))
+		);
+	}
+
+	/**
+	 * The remaining events as objects, for consumers that don't take cursors such as the grammar engine.
+	 *
+	 * @return
+	 */
+	public Stream<Pair<? extends InterfaceEvent, Object>> events() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<Pair<? extends InterfaceEvent, Object>>() {
+			private boolean advanced = false;
+			private boolean more;
+
+			@Override
+			public boolean hasNext() {
+				if (!advanced) {
+					more = BinaryReader.this.next();
+					advanced = true;
+				}
+				return more;
+			}
+
+			@Override
+			public Pair<? extends InterfaceEvent, Object> next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				advanced = false;
+				return new Pair<>(event(), position);
+			}
+		}, Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	private InterfaceEvent event() {
+		switch (tag) {
+			case BinaryFormat.OBJECT_OPEN:
+				return new InterfaceObjectOpenEvent();
+			case BinaryFormat.OBJECT_CLOSE:
+				return new InterfaceObjectCloseEvent();
+			case BinaryFormat.ARRAY_OPEN:
+				return new InterfaceArrayOpenEvent();
+			case BinaryFormat.ARRAY_CLOSE:
+				return new InterfaceArrayCloseEvent();
+			case BinaryFormat.KEY:
+				return new InterfaceKeyEvent(string);
+			case BinaryFormat.TYPE:
+				return new InterfaceTypeEvent(string);
+			case BinaryFormat.STRING:
+				return new InterfacePrimitiveEvent(string);
+			case BinaryFormat.INT:
+				return new InterfaceIntEvent((int) number);
+			case BinaryFormat.LONG:
+				return new InterfaceLongEvent(number);
+			case BinaryFormat.DOUBLE:
+				return new InterfaceDoubleEvent(real);
+			case BinaryFormat.TRUE:
+				return new InterfaceBooleanEvent(true);
+			case BinaryFormat.FALSE:
+				return new InterfaceBooleanEvent(false);
+			default:
+				throw new AssertionError();
+		}
+	}
+
+	@Override
+	public boolean next() {
+		if (!fill(1))
+			return false;
+		position = base + buffer.position();
+		tag = buffer.get();
+		switch (tag) {
+			case BinaryFormat.OBJECT_OPEN:
+				kind = InterfaceEventKind.OBJECT_OPEN;
+				break;
+			case BinaryFormat.OBJECT_CLOSE:
+				kind = InterfaceEventKind.OBJECT_CLOSE;
+				break;
+			case BinaryFormat.ARRAY_OPEN:
+				kind = InterfaceEventKind.ARRAY_OPEN;
+				break;
+			case BinaryFormat.ARRAY_CLOSE:
+				kind = InterfaceEventKind.ARRAY_CLOSE;
+				break;
+			case BinaryFormat.KEY:
+				kind = InterfaceEventKind.KEY;
+				string = name();
+				break;
+			case BinaryFormat.TYPE:
+				kind = InterfaceEventKind.TYPE;
+				string = name();
+				break;
+			case BinaryFormat.STRING:
+				kind = InterfaceEventKind.PRIMITIVE;
+				string = string();
+				break;
+			case BinaryFormat.INT: {
+				kind = InterfaceEventKind.PRIMITIVE;
+				final long encoded = varint();
+				if (encoded > 0xffffffffL)
+					throw error("Int out of range.");
+				number = (encoded >>> 1) ^ -(encoded & 1);
+				break;
+			}
+			case BinaryFormat.LONG: {
+				kind = InterfaceEventKind.PRIMITIVE;
+				final long encoded = varint();
+				number = (encoded >>> 1) ^ -(encoded & 1);
+				break;
+			}
+			case BinaryFormat.DOUBLE:
+				kind = InterfaceEventKind.PRIMITIVE;
+				require(8);
+				real = buffer.getDouble();
+				break;
+			case BinaryFormat.TRUE:
+			case BinaryFormat.FALSE:
+				kind = InterfaceEventKind.PRIMITIVE;
+				break;
+			default:
+				throw error(String.format("Unknown tag [%s].", tag));
+		}
+		return true;
+	}
+
+	@Override
+	public InterfaceEventKind kind() {
+		return kind;
+	}
+
+	@Override
+	public String stringValue() {
+		switch (tag) {
+			case BinaryFormat.KEY:
+			case BinaryFormat.TYPE:
+			case BinaryFormat.STRING:
+				return string;
+			case BinaryFormat.INT:
+			case BinaryFormat.LONG:
+				return Long.toString(number);
+			case BinaryFormat.DOUBLE:
+				return Double.toString(real);
+			case BinaryFormat.TRUE:
+				return "true";
+			case BinaryFormat.FALSE:
+				return "false";
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	public int intValue() {
+		switch (tag) {
+			case BinaryFormat.INT:
+				return (int) number;
+			case BinaryFormat.LONG:
+				if (number != (int) number)
+					throw new NumberFormatException(String.format("[%s] is out of range for an int.", number));
+				return (int) number;
+			case BinaryFormat.STRING:
+				return Integer.parseInt(string);
+			default:
+				throw new NumberFormatException(String.format("[%s] is not an integer.", stringValue()));
+		}
+	}
+
+	@Override
+	public long longValue() {
+		switch (tag) {
+			case BinaryFormat.INT:
+			case BinaryFormat.LONG:
+				return number;
+			case BinaryFormat.STRING:
+				return Long.parseLong(string);
+			default:
+				throw new NumberFormatException(String.format("[%s] is not an integer.", stringValue()));
+		}
+	}
+
+	@Override
+	public double doubleValue() {
+		switch (tag) {
+			case BinaryFormat.INT:
+			case BinaryFormat.LONG:
+				return number;
+			case BinaryFormat.DOUBLE:
+				return real;
+			case BinaryFormat.STRING:
+				return Double.parseDouble(string);
+			default:
+				throw new NumberFormatException(String.format("[%s] is not a number.", stringValue()));
+		}
+	}
+
+	@Override
+	public boolean booleanValue() {
+		switch (tag) {
+			case BinaryFormat.TRUE:
+				return true;
+			case BinaryFormat.FALSE:
+				return false;
+			default:
+				return InterfaceEventCursor.super.booleanValue();
+		}
+	}
+
+	@Override
+	public Object position() {
+		return position;
+	}
+
+	private void header(final long fingerprint) {
+		require(BinaryFormat.headerSize);
+		for (final byte b : BinaryFormat.magic)
+			if (buffer.get() != b)
+				throw error("Not an interface binary stream.");
+		final byte version = buffer.get();
+		if (version != BinaryFormat.version)
+			throw error(String.format("Unsupported version [%s].", version));
+		final long found = buffer.getLong();
+		if (found != fingerprint)
+			throw error(String.format(
+					"Stream fingerprint [%016x] doesn't match expected fingerprint [%016x]; the stream was written with a different model.",
+					found,
+					fingerprint
+			));
+	}
+
+	/**
+	 * Make count bytes available in the buffer, reading more from the channel if necessary.
+	 *
+	 * @param count
+	 * @return False if the stream ended first.
+	 */
+	private boolean fill(final int count) {
+		if (buffer.remaining() >= count)
+			return true;
+		if (channel == null)
+			return false;
+		base += buffer.position();
+		if (buffer.capacity() < count) {
+			final ByteBuffer grown = ByteBuffer.allocate(Math.max(count, buffer.capacity() * 2));
+			grown.put(buffer);
+			buffer = grown;
+		} else
+			buffer.compact();
+		while (buffer.position() < count) {
+			if (uncheck(() -> channel.read(buffer)) < 0)
+				break;
+		}
+		buffer.flip();
+		return buffer.remaining() >= count;
+	}
+
+	private void require(final int count) {
+		if (!fill(count))
+			throw error("Unexpected end of stream.");
+	}
+
+	private long varint() {
+		long out = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			require(1);
+			final byte b = buffer.get();
+			out |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return out;
+		}
+		throw error("Varint too long.");
+	}
+
+	private String name() {
+		final long reference = varint();
+		if (reference == 0) {
+			final String out = string();
+			names.add(out);
+			return out;
+		}
+		if (reference > names.size())
+			throw error(String.format("Unknown name reference [%s].", reference));
+		return names.get((int) reference - 1);
+	}
+
+	private String string() {
+		final long length = varint();
+		if (length > Integer.MAX_VALUE)
+			throw error("String too long.");
+		final int count = (int) length;
+		require(count);
+		final String out;
+		if (buffer.hasArray()) {
+			out = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), count, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + count);
+		} else {
+			if (scratch.length < count)
+				scratch = new byte[Math.max(count, scratch.length * 2)];
+			buffer.get(scratch, 0, count);
+			out = new String(scratch, 0, count, StandardCharsets.UTF_8);
+		}
+		return out;
+	}
+
+	private InvalidEventStream error(final String message) {
+		return new InvalidEventStream(new InterfaceRootPath(""), base + buffer.position(), message);
+	}
+}
@@ -0,0 +1,387 @@
+package com.zarbosoft.interface1.binary;
+
+import com.zarbosoft.interface1.Walk;
+import org.reflections.Reflections;
+
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * Writes a walked object in the {@link BinaryFormat}.  Pass it to
+ * {@link Walk#walk(Walk.TypeInfo, Object, Walk.ObjectVisitor)} or
+ * {@link Walk#walkCompiled(Walk.TypeInfo, Object, Walk.ObjectVisitor)}; the header is written when the writer is
+ * created.
+ * <p>
+ * A writer writes one document.  Not thread safe.
+ */
+public class BinaryWriter implements Walk.ObjectVisitor {
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final Map<String, Integer> names = new HashMap<>();
+	private final Map<Field, Integer> fieldNames = new HashMap<>();
+	private final Map<Class<?>, Integer> typeNames = new HashMap<>();
+
+	/**
+	 * True between the begin and end of a null field.  Null fields are omitted, as in
+	 * {@link com.zarbosoft.interface1.WalkCursor}.
+	 */
+	private boolean skipping = false;
+
+	/**
+	 * Bytes written to the channel so far.
+	 */
+	private long flushed;
+
+	/**
+	 * Write into a buffer.
+	 *
+	 * @param buffer
+	 * @param fingerprint The fingerprint of the root type.
+	 * @throws BufferOverflowException If the buffer fills.
+	 */
+	public BinaryWriter(final ByteBuffer buffer, final long fingerprint) {
+		this(null, buffer, 0);
+		header(fingerprint);
+	}
+
+	/**
+	 * Write to a channel through a buffer.  Call {@link #flush()} when the walk is done.
+	 *
+	 * @param channel
+	 * @param fingerprint The fingerprint of the root type.
+	 * @param bufferSize
+	 */
+	public BinaryWriter(final WritableByteChannel channel, final long fingerprint, final int bufferSize) {
+		this(channel, allocate(bufferSize), 0);
+		header(fingerprint);
+	}
+
+	public BinaryWriter(final WritableByteChannel channel, final long fingerprint) {
+		this(channel, fingerprint, 64 * 1024);
+	}
+
+	private BinaryWriter(final WritableByteChannel channel, final ByteBuffer buffer, final long flushed) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.flushed = flushed;
+	}
+
+	/**
+	 * Write events to a channel without a header.
+	 *
+	 * @param channel
+	 * @param offset     The number of bytes already written to the channel.
+	 * @param bufferSize
+	 * @return
+	 */
+	static BinaryWriter headerless(final WritableByteChannel channel, final long offset, final int bufferSize) {
+		return new BinaryWriter(channel, allocate(bufferSize), offset);
+	}
+
+	private static ByteBuffer allocate(final int bufferSize) {
+		if (bufferSize < BinaryFormat.headerSize)
+			throw new IllegalArgumentException(String.format("Buffer size must be at least %s.",
+					BinaryFormat.headerSize
+			));
+		return ByteBuffer.allocate(bufferSize);
+	}
+
+	/**
+	 * Write an object to a channel.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type of the object.
+	 * @param value
+	 * @param channel
+	 */
+	public static void write(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Object value,
+			final WritableByteChannel channel
+	) {
+		final BinaryWriter writer = new BinaryWriter(channel, BinaryFormat.fingerprint(reflections, typeInfo));
+		Walk.walkCompiled(typeInfo, value, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Write an object into a buffer.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The type of the object.
+	 * @param value
+	 * @param buffer
+	 * @throws BufferOverflowException If the buffer fills.
+	 */
+	public static void write(
+			final Reflections reflections, final Walk.TypeInfo typeInfo, final Object value, final ByteBuffer buffer
+	) {
+		Walk.walkCompiled(typeInfo, value, new BinaryWriter(buffer, BinaryFormat.fingerprint(reflections, typeInfo)));
+	}
+
+	/**
+	 * Write everything buffered to the channel.  Does nothing when writing into a buffer.
+	 */
+	public void flush() {
+		if (channel == null)
+			return;
+		buffer.flip();
+		flushed += buffer.remaining();
+		while (buffer.hasRemaining())
+			uncheck(() -> channel.write(buffer));
+		buffer.clear();
+	}
+
+	/**
+	 * @return The offset in the channel of the next byte to be written.
+	 */
+	long offset() {
+		return flushed + buffer.position();
+	}
+
+	/**
+	 * Start a new name table, so the following events can be read without the preceding ones.
+	 */
+	void reset() {
+		names.clear();
+		fieldNames.clear();
+		typeNames.clear();
+	}
+
+	private void header(final long fingerprint) {
+		buffer.put(BinaryFormat.magic);
+		buffer.put(BinaryFormat.version);
+		buffer.putLong(fingerprint);
+	}
+
+	/**
+	 * Make room for count bytes.
+	 *
+	 * @param count At most the buffer size.
+	 */
+	private void reserve(final int count) {
+		if (buffer.remaining() >= count)
+			return;
+		if (channel == null)
+			throw new BufferOverflowException();
+		flush();
+	}
+
+	private void tag(final byte tag) {
+		reserve(1);
+		buffer.put(tag);
+	}
+
+	private void varint(long value) {
+		reserve(10);
+		while ((value & ~0x7fL) != 0) {
+			buffer.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private void string(final String value) {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		varint(bytes.length);
+		int offset = 0;
+		while (offset < bytes.length) {
+			reserve(1);
+			final int count = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * @param tag
+	 * @param name
+	 * @return The name's reference, for caching.
+	 */
+	private int name(final byte tag, final String name) {
+		final Integer found = names.get(name);
+		tag(tag);
+		if (found != null) {
+			varint(found);
+			return found;
+		}
+		final int reference = names.size() + 1;
+		names.put(name, reference);
+		varint(0);
+		string(name);
+		return reference;
+	}
+
+	@Override
+	public boolean wantsFieldValues() {
+		return false;
+	}
+
+	@Override
+	public void visitString(final String value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.STRING);
+		string(value);
+	}
+
+	@Override
+	public void visitInteger(final Integer value) {
+		if (skipping)
+			return;
+		visitInt(value);
+	}
+
+	@Override
+	public void visitDouble(final Double value) {
+		if (skipping)
+			return;
+		visitDouble((double) value);
+	}
+
+	@Override
+	public void visitBoolean(final Boolean value) {
+		if (skipping)
+			return;
+		visitBoolean((boolean) value);
+	}
+
+	@Override
+	public void visitInt(final int value) {
+		tag(BinaryFormat.INT);
+		varint(((value << 1) ^ (value >> 31)) & 0xffffffffL);
+	}
+
+	@Override
+	public void visitDouble(final double value) {
+		reserve(9);
+		buffer.put(BinaryFormat.DOUBLE);
+		buffer.putDouble(value);
+	}
+
+	@Override
+	public void visitBoolean(final boolean value) {
+		tag(value ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+	}
+
+	@Override
+	public void visitEnum(final Enum value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.STRING);
+		string(Walk.decideEnumName(value));
+	}
+
+	@Override
+	public void visitListStart(final List value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.ARRAY_OPEN);
+	}
+
+	@Override
+	public void visitListEnd(final List value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.ARRAY_CLOSE);
+	}
+
+	@Override
+	public void visitSetStart(final Set value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.ARRAY_OPEN);
+	}
+
+	@Override
+	public void visitSetEnd(final Set value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.ARRAY_CLOSE);
+	}
+
+	@Override
+	public void visitMapStart(final Map value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.OBJECT_OPEN);
+	}
+
+	@Override
+	public void visitKeyBegin(final String key) {
+		name(BinaryFormat.KEY, key);
+	}
+
+	@Override
+	public void visitKeyEnd(final String key) {
+	}
+
+	@Override
+	public void visitMapEnd(final Map value) {
+		if (skipping)
+			return;
+		tag(BinaryFormat.OBJECT_CLOSE);
+	}
+
+	@Override
+	public boolean visitAbstractBegin(final Class<?> klass, final Object value) {
+		if (skipping)
+			return false;
+		final Integer found = typeNames.get(value.getClass());
+		if (found != null) {
+			tag(BinaryFormat.TYPE);
+			varint(found);
+		} else
+			typeNames.put(value.getClass(),
+					name(BinaryFormat.TYPE, Walk.ClassInfo.get(value.getClass()).name.toLowerCase())
+			);
+		return true;
+	}
+
+	@Override
+	public void visitAbstractEnd(final Class<?> klass, final Object value) {
+	}
+
+	@Override
+	public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+		if (skipping)
+			return false;
+		tag(BinaryFormat.OBJECT_OPEN);
+		return true;
+	}
+
+	@Override
+	public void visitFieldBegin(final Field field, final Object value) {
+		if (value == null && !field.getType().isPrimitive()) {
+			skipping = true;
+			return;
+		}
+		final Integer found = fieldNames.get(field);
+		if (found != null) {
+			tag(BinaryFormat.KEY);
+			varint(found);
+		} else
+			fieldNames.put(field, name(BinaryFormat.KEY, Walk.decideName(field)));
+	}
+
+	@Override
+	public void visitFieldEnd(final Field field, final Object value) {
+		if (value == null && !field.getType().isPrimitive())
+			skipping = false;
+	}
+
+	@Override
+	public void visitConcreteEnd(final Class<?> klass, final Object value) {
+		tag(BinaryFormat.OBJECT_CLOSE);
+	}
+}
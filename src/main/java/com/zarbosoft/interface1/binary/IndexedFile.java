@@ -0,0 +1,420 @@
+package com.zarbosoft.interface1.binary;
+
+import com.zarbosoft.interface1.Events;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.events.InvalidElement;
+import com.zarbosoft.interface1.events.InvalidEventStream;
+import com.zarbosoft.interface1.events.ReadEventDecoder;
+import com.zarbosoft.interface1.path.InterfaceRootPath;
+import org.reflections.Reflections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.zarbosoft.rendaw.common.Common.uncheck;
+
+/**
+ * A file holding a list or a String-keyed map whose elements can be read individually.  The file is memory mapped
+ * and only the elements asked for are deserialized.
+ * <p>
+ * The file starts with a header: the magic bytes {@code IFX}, a version byte, the fingerprint of the list or map
+ * type (see {@link BinaryFormat#fingerprint(Reflections, Walk.TypeInfo)}) and a byte for list (0) or map (1).
+ * Each element follows in the {@link BinaryFormat} without a header and with its own name table.  Then comes the
+ * index: the element count, the offset of each element and the offset of the end of the last element as 8 byte
+ * integers, and for maps each key as a 4 byte length and UTF-8.  The file ends with the 8 byte offset of the index.
+ * <p>
+ * The file is mapped in segments of up to 1GiB, split between elements, so files can be larger than a single
+ * mapping but no element may be larger than 2GiB.  Elements are decoded straight from the mapping.  Reads are thread
+ * safe.  Closing the file closes the channel; the mapping itself is released when it's garbage collected.
+ *
+ * @param <T> The element type.
+ */
+public class IndexedFile<T> implements Closeable {
+	private static final byte[] magic = new byte[] {'I', 'F', 'X'};
+	private static final byte version = 1;
+	private static final int headerSize = magic.length + 1 + 8 + 1;
+	private static final byte LIST = 0;
+	private static final byte MAP = 1;
+	private static final long segmentSize = 1L << 30;
+
+	private final FileChannel channel;
+	private final ReadEventDecoder decoder;
+
+	/**
+	 * Element start offsets, with the end of the last element appended.
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Keys by element for maps, otherwise null.
+	 */
+	private final String[] keys;
+	private final Map<String, Integer> byKey;
+
+	private final MappedByteBuffer[] segments;
+	private final long[] segmentStarts;
+
+	/**
+	 * The index of the first element in each segment.
+	 */
+	private final int[] segmentFirsts;
+
+	private IndexedFile(
+			final FileChannel channel,
+			final ReadEventDecoder decoder,
+			final long[] offsets,
+			final String[] keys,
+			final List<MappedByteBuffer> segments,
+			final List<Long> segmentStarts,
+			final List<Integer> segmentFirsts
+	) {
+		this.channel = channel;
+		this.decoder = decoder;
+		this.offsets = offsets;
+		this.keys = keys;
+		if (keys == null)
+			byKey = null;
+		else {
+			byKey = new HashMap<>();
+			for (int i = 0; i < keys.length; ++i)
+				byKey.put(keys[i], i);
+		}
+		this.segments = segments.toArray(new MappedByteBuffer[0]);
+		this.segmentStarts = segmentStarts.stream().mapToLong(l -> l).toArray();
+		this.segmentFirsts = segmentFirsts.stream().mapToInt(i -> i).toArray();
+	}
+
+	private static byte kind(final Walk.TypeInfo typeInfo) {
+		final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) typeInfo.type);
+		switch (info.kind) {
+			case LIST:
+				if (typeInfo.parameters == null)
+					throw new AssertionError("Unparameterized list!");
+				return LIST;
+			case MAP:
+				if (typeInfo.parameters == null)
+					throw new AssertionError("Unparameterized map!");
+				if (typeInfo.parameters.length != 2)
+					throw new AssertionError("Map does not have exactly 2 parameters!");
+				if (typeInfo.parameters[0].type != String.class)
+					throw new AssertionError("Interfacable maps must have String keys.");
+				return MAP;
+			default:
+				throw new IllegalArgumentException(String.format("[%s] is not a list or map type.", typeInfo));
+		}
+	}
+
+	private static Walk.TypeInfo elementType(final Walk.TypeInfo typeInfo) {
+		return typeInfo.parameters[typeInfo.parameters.length - 1];
+	}
+
+	/**
+	 * Write a list.  The elements are walked and written one at a time so they don't all need to be in memory.
+	 *
+	 * @param reflections
+	 * @param typeInfo    A list type.
+	 * @param elements
+	 * @param path
+	 */
+	public static void writeList(
+			final Reflections reflections, final Walk.TypeInfo typeInfo, final Iterable<?> elements, final Path path
+	) {
+		if (kind(typeInfo) != LIST)
+			throw new IllegalArgumentException(String.format("[%s] is not a list type.", typeInfo));
+		write(reflections, typeInfo, elements, null, path);
+	}
+
+	/**
+	 * Write a map.
+	 *
+	 * @param reflections
+	 * @param typeInfo    A map type.
+	 * @param entries
+	 * @param path
+	 */
+	public static void writeMap(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Map<String, ?> entries,
+			final Path path
+	) {
+		if (kind(typeInfo) != MAP)
+			throw new IllegalArgumentException(String.format("[%s] is not a map type.", typeInfo));
+		write(reflections, typeInfo, entries.values(), entries.keySet(), path);
+	}
+
+	private static void write(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Iterable<?> elements,
+			final Iterable<String> keys,
+			final Path path
+	) {
+		final Walk.TypeInfo element = elementType(typeInfo);
+		try (
+				final FileChannel channel = uncheck(() -> FileChannel.open(path,
+						StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING,
+						StandardOpenOption.WRITE
+				))
+		) {
+			final ByteBuffer header = ByteBuffer.allocate(headerSize);
+			header.put(magic);
+			header.put(version);
+			header.putLong(BinaryFormat.fingerprint(reflections, typeInfo));
+			header.put(keys == null ? LIST : MAP);
+			header.flip();
+			writeFully(channel, header);
+
+			final BinaryWriter writer = BinaryWriter.headerless(channel, headerSize, 64 * 1024);
+			long[] offsets = new long[1024];
+			int count = 0;
+			for (final Object value : elements) {
+				if (count + 1 >= offsets.length)
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				offsets[count++] = writer.offset();
+				writer.reset();
+				Walk.walkCompiled(element, value, writer);
+			}
+			offsets[count] = writer.offset();
+			writer.flush();
+			final long indexOffset = offsets[count];
+
+			final ByteBuffer index = ByteBuffer.allocate(64 * 1024);
+			index.putLong(count);
+			for (int i = 0; i <= count; ++i) {
+				if (index.remaining() < 8)
+					flushIndex(channel, index);
+				index.putLong(offsets[i]);
+			}
+			if (keys != null) {
+				for (final String key : keys) {
+					final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+					if (index.remaining() < 4)
+						flushIndex(channel, index);
+					index.putInt(bytes.length);
+					int offset = 0;
+					while (offset < bytes.length) {
+						if (!index.hasRemaining())
+							flushIndex(channel, index);
+						final int length = Math.min(index.remaining(), bytes.length - offset);
+						index.put(bytes, offset, length);
+						offset += length;
+					}
+				}
+			}
+			if (index.remaining() < 8)
+				flushIndex(channel, index);
+			index.putLong(indexOffset);
+			flushIndex(channel, index);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void flushIndex(final FileChannel channel, final ByteBuffer index) {
+		index.flip();
+		writeFully(channel, index);
+		index.clear();
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer) {
+		while (buffer.hasRemaining())
+			uncheck(() -> channel.write(buffer));
+	}
+
+	/**
+	 * Open a file written by {@link #writeList(Reflections, Walk.TypeInfo, Iterable, Path)} or
+	 * {@link #writeMap(Reflections, Walk.TypeInfo, Map, Path)}.  Reads the index; elements are read when requested.
+	 *
+	 * @param reflections
+	 * @param typeInfo    The list or map type the file was written with.
+	 * @param path
+	 * @param <T>         The element type.
+	 * @return
+	 * @throws InvalidEventStream If the file is malformed or was written with a different model.
+	 */
+	public static <T> IndexedFile<T> open(final Reflections reflections, final Walk.TypeInfo typeInfo, final Path path) {
+		final byte kind = kind(typeInfo);
+		final FileChannel channel = uncheck(() -> FileChannel.open(path, StandardOpenOption.READ));
+		try {
+			final long size = uncheck(() -> channel.size());
+			if (size < headerSize + 8 + 8 + 8)
+				throw error(0, "File too short.");
+
+			final ByteBuffer header = read(channel, 0, headerSize);
+			for (final byte b : magic)
+				if (header.get() != b)
+					throw error(0, "Not an indexed interface file.");
+			final byte foundVersion = header.get();
+			if (foundVersion != version)
+				throw error(0, String.format("Unsupported version [%s].", foundVersion));
+			final long fingerprint = BinaryFormat.fingerprint(reflections, typeInfo);
+			final long foundFingerprint = header.getLong();
+			if (foundFingerprint != fingerprint)
+				throw error(0, String.format(
+						"File fingerprint [%016x] doesn't match expected fingerprint [%016x]; the file was written with a different model.",
+						foundFingerprint,
+						fingerprint
+				));
+			if (header.get() != kind)
+				throw error(0, kind == LIST ? "File contains a map, not a list." : "File contains a list, not a map.");
+
+			final long indexOffset = read(channel, size - 8, 8).getLong();
+			if (indexOffset < headerSize || indexOffset > size - 8 - 8 || size - 8 - indexOffset > Integer.MAX_VALUE)
+				throw error(size - 8, "Invalid index offset.");
+			final ByteBuffer index =
+					uncheck(() -> channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, size - 8 - indexOffset));
+			final long count = index.getLong();
+			if (count < 0 || count > (index.remaining() / 8) - 1)
+				throw error(indexOffset, "Invalid element count.");
+			final long[] offsets = new long[(int) count + 1];
+			for (int i = 0; i <= count; ++i) {
+				offsets[i] = index.getLong();
+				if (offsets[i] < headerSize || offsets[i] > indexOffset || (i > 0 && offsets[i] < offsets[i - 1]))
+					throw error(indexOffset, String.format("Invalid offset for element %s.", i));
+				if (i > 0 && offsets[i] - offsets[i - 1] > Integer.MAX_VALUE)
+					throw error(offsets[i - 1], String.format("Element %s is too large.", i - 1));
+			}
+			final String[] keys;
+			if (kind == MAP) {
+				keys = new String[(int) count];
+				for (int i = 0; i < count; ++i) {
+					if (index.remaining() < 4)
+						throw error(indexOffset, "Truncated key index.");
+					final int length = index.getInt();
+					if (length < 0 || length > index.remaining())
+						throw error(indexOffset, "Truncated key index.");
+					final byte[] bytes = new byte[length];
+					index.get(bytes);
+					keys[i] = new String(bytes, StandardCharsets.UTF_8);
+				}
+			} else
+				keys = null;
+
+			final List<MappedByteBuffer> segments = new ArrayList<>();
+			final List<Long> segmentStarts = new ArrayList<>();
+			final List<Integer> segmentFirsts = new ArrayList<>();
+			int first = 0;
+			while (first < count) {
+				int end = first + 1;
+				while (end < count && offsets[end + 1] - offsets[first] <= segmentSize)
+					end += 1;
+				final long start = offsets[first];
+				final long length = offsets[end] - start;
+				segments.add(uncheck(() -> channel.map(FileChannel.MapMode.READ_ONLY, start, length)));
+				segmentStarts.add(start);
+				segmentFirsts.add(first);
+				first = end;
+			}
+			return new IndexedFile<>(channel,
+					Events.decoders.get(reflections, elementType(typeInfo)),
+					offsets,
+					keys,
+					segments,
+					segmentStarts,
+					segmentFirsts
+			);
+		} catch (final RuntimeException e) {
+			uncheck(() -> channel.close());
+			throw e;
+		}
+	}
+
+	private static ByteBuffer read(final FileChannel channel, final long position, final int length) {
+		final ByteBuffer out = ByteBuffer.allocate(length);
+		while (out.hasRemaining()) {
+			final int read = uncheck(() -> channel.read(out, position + out.position()));
+			if (read < 0)
+				throw error(position + out.position(), "Unexpected end of file.");
+		}
+		out.flip();
+		return out;
+	}
+
+	private static InvalidEventStream error(final long offset, final String message) {
+		return new InvalidEventStream(new InterfaceRootPath(""), offset, message);
+	}
+
+	/**
+	 * @return The number of elements.
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Deserialize an element.  Errors are thrown as {@link InvalidElement} with the element's index, or key for maps,
+	 * at the start of the path.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public T get(final int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException(String.format("Index %s, size %s.", index, size()));
+		int segment = Arrays.binarySearch(segmentFirsts, index);
+		if (segment < 0)
+			segment = -segment - 2;
+		final ByteBuffer buffer = segments[segment].duplicate();
+		final int start = (int) (offsets[index] - segmentStarts[segment]);
+		buffer.limit(start + (int) (offsets[index + 1] - offsets[index]));
+		buffer.position(start);
+		final String key = keys == null ? null : keys[index];
+		try {
+			return decoder
+					.<T>incremental("/" + (key == null ? index : key))
+					.feed(BinaryReader.headerless(buffer, offsets[index]))
+					.finish();
+		} catch (final InvalidEventStream e) {
+			throw new InvalidElement(index, key, e);
+		}
+	}
+
+	/**
+	 * Deserialize a map value.
+	 *
+	 * @param key
+	 * @return The value, or null if there's no such key.
+	 */
+	public T get(final String key) {
+		if (byKey == null)
+			throw new UnsupportedOperationException("Not a map file.");
+		final Integer index = byKey.get(key);
+		if (index == null)
+			return null;
+		return get(index);
+	}
+
+	/**
+	 * @return The keys in the order they were written, for maps.
+	 */
+	public List<String> keys() {
+		if (keys == null)
+			throw new UnsupportedOperationException("Not a map file.");
+		return Collections.unmodifiableList(Arrays.asList(keys));
+	}
+
+	/**
+	 * Deserialize every element in order.
+	 *
+	 * @return
+	 */
+	public Stream<T> stream() {
+		return IntStream.range(0, size()).mapToObj(this::get);
+	}
+
+	@Override
+	public void close() {
+		uncheck(() -> channel.close());
+	}
+}
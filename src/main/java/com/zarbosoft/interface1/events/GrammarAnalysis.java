@@ -0,0 +1,163 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Configuration;
+import com.zarbosoft.interface1.Walk;
+import org.reflections.Reflections;
+
+import java.util.*;
+
+/**
+ * Finds the places in the grammar for a type where alternatives can start with the same event, so a parser has to
+ * keep several branches alive until a later event decides between them.
+ */
+public class GrammarAnalysis {
+	private final Reflections reflections;
+	private final Map<Walk.TypeInfo, EnumSet<InterfaceEventKind>> firsts = new HashMap<>();
+	private final Set<Walk.TypeInfo> visited = new HashSet<>();
+	private final List<String> out = new ArrayList<>();
+
+	private GrammarAnalysis(final Reflections reflections) {
+		this.reflections = reflections;
+	}
+
+	/**
+	 * @param reflections
+	 * @param root
+	 * @return A description of each overlap, one per line.
+	 */
+	public static List<String> ambiguities(final Reflections reflections, final Walk.TypeInfo root) {
+		final GrammarAnalysis analysis = new GrammarAnalysis(reflections);
+		analysis.visit(root);
+		return analysis.out;
+	}
+
+	private void visit(final Walk.TypeInfo target) {
+		if (!visited.add(target))
+			return;
+		final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) target.type);
+		switch (info.kind) {
+			case LIST:
+			case SET:
+				if (target.parameters != null)
+					visit(target.parameters[0]);
+				break;
+			case MAP:
+				if (target.parameters != null && target.parameters.length == 2)
+					visit(target.parameters[1]);
+				break;
+			case ABSTRACT: {
+				final Class<?> def = typeless(target);
+				for (final Class<?> klass : Walk.derivedTypes(reflections, target)) {
+					if (klass.equals(def) && first(Walk.TypeInfo.of(klass)).contains(InterfaceEventKind.TYPE))
+						out.add(String.format(
+								"%s: a type tag may name a subtype of [%s] or start the untagged default [%s].",
+								describe(target),
+								info.klass.getName(),
+								klass.getName()
+						));
+					visit(Walk.TypeInfo.of(klass));
+				}
+				break;
+			}
+			case CONCRETE: {
+				final Walk.FieldInfo shorthand = shorthand(info);
+				if (shorthand != null) {
+					final EnumSet<InterfaceEventKind> first = first(shorthand.type);
+					if (first.contains(InterfaceEventKind.OBJECT_OPEN))
+						out.add(String.format(
+								"%s: an object open may start the full form or the shorthand for field [%s].",
+								info.klass.getName(),
+								shorthand.name
+						));
+				}
+				for (final Walk.FieldInfo field : info.fields)
+					visit(field.type);
+				break;
+			}
+			default:
+				break;
+		}
+	}
+
+	private static String describe(final Walk.TypeInfo target) {
+		if (target.field != null)
+			return String.format("%s.%s", target.field.getDeclaringClass().getName(), target.field.getName());
+		return ((Class<?>) target.type).getName();
+	}
+
+	private static Class<?> typeless(final Walk.TypeInfo target) {
+		if (target.field == null)
+			return null;
+		return target.field.getAnnotation(Configuration.class).typeless();
+	}
+
+	/**
+	 * The field an object can be written as in place of the full form, as in {@link ReadEventGrammar}.
+	 *
+	 * @param info
+	 * @return
+	 */
+	private static Walk.FieldInfo shorthand(final Walk.ClassInfo info) {
+		Walk.FieldInfo only = null;
+		int count = 0;
+		for (final Walk.FieldInfo field : info.fields) {
+			if (field.required) {
+				only = field;
+				count += 1;
+			}
+		}
+		if (count == 0 && info.fields.size() == 1)
+			return info.fields.get(0);
+		return count == 1 ? only : null;
+	}
+
+	/**
+	 * The kinds of event a value of the type can start with.
+	 *
+	 * @param target
+	 * @return
+	 */
+	private EnumSet<InterfaceEventKind> first(final Walk.TypeInfo target) {
+		final EnumSet<InterfaceEventKind> found = firsts.get(target);
+		if (found != null)
+			return found;
+		// Placeholder while computing, for recursive types
+		firsts.put(target, EnumSet.noneOf(InterfaceEventKind.class));
+		final EnumSet<InterfaceEventKind> out;
+		final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) target.type);
+		switch (info.kind) {
+			case STRING:
+			case INTEGER:
+			case DOUBLE:
+			case BOOLEAN:
+			case ENUM:
+				out = EnumSet.of(InterfaceEventKind.PRIMITIVE);
+				break;
+			case LIST:
+			case SET:
+				out = EnumSet.of(InterfaceEventKind.ARRAY_OPEN);
+				break;
+			case MAP:
+				out = EnumSet.of(InterfaceEventKind.OBJECT_OPEN);
+				break;
+			case ABSTRACT: {
+				out = EnumSet.of(InterfaceEventKind.TYPE);
+				final Class<?> def = typeless(target);
+				if (def != null && def != Void.class)
+					out.addAll(first(Walk.TypeInfo.of(def)));
+				break;
+			}
+			case CONCRETE: {
+				out = EnumSet.of(InterfaceEventKind.OBJECT_OPEN);
+				final Walk.FieldInfo shorthand = shorthand(info);
+				if (shorthand != null)
+					out.addAll(first(shorthand.type));
+				break;
+			}
+			default:
+				out = EnumSet.of(InterfaceEventKind.OTHER);
+		}
+		firsts.put(target, out);
+		return out;
+	}
+}
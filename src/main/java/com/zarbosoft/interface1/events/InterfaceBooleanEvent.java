@@ -0,0 +1,37 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Configuration;
+
+@Configuration(name = "boolean")
+public class InterfaceBooleanEvent extends InterfacePrimitiveEvent {
+	public InterfaceBooleanEvent(final boolean value) {
+		super(Boolean.toString(value));
+		this.booleanValue = value;
+	}
+
+	public InterfaceBooleanEvent() {
+	}
+
+	@Configuration
+	public boolean booleanValue;
+
+	@Override
+	public int asInt() {
+		throw new NumberFormatException(String.format("Value [%s] is not a number", booleanValue));
+	}
+
+	@Override
+	public long asLong() {
+		throw new NumberFormatException(String.format("Value [%s] is not a number", booleanValue));
+	}
+
+	@Override
+	public double asDouble() {
+		throw new NumberFormatException(String.format("Value [%s] is not a number", booleanValue));
+	}
+
+	@Override
+	public boolean asBoolean() {
+		return booleanValue;
+	}
+}
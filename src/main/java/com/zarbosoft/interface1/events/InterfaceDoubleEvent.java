@@ -0,0 +1,41 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Configuration;
+
+@Configuration(name = "double")
+public class InterfaceDoubleEvent extends InterfacePrimitiveEvent {
+	public InterfaceDoubleEvent(final double value) {
+		super(Double.toString(value));
+		this.doubleValue = value;
+	}
+
+	public InterfaceDoubleEvent() {
+	}
+
+	@Configuration
+	public double doubleValue;
+
+	@Override
+	public int asInt() {
+		if ((int) doubleValue != doubleValue)
+			throw new NumberFormatException(String.format("Value [%s] is not an integer", doubleValue));
+		return (int) doubleValue;
+	}
+
+	@Override
+	public long asLong() {
+		if ((long) doubleValue != doubleValue)
+			throw new NumberFormatException(String.format("Value [%s] is not an integer", doubleValue));
+		return (long) doubleValue;
+	}
+
+	@Override
+	public double asDouble() {
+		return doubleValue;
+	}
+
+	@Override
+	public boolean asBoolean() {
+		throw new IllegalArgumentException(String.format("Invalid value [%s]", doubleValue));
+	}
+}
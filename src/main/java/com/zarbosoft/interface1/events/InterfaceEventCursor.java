@@ -0,0 +1,77 @@
+package com.zarbosoft.interface1.events;
+
+/**
+ * A source of events read one at a time, for producers that keep the current event in reused state instead of
+ * allocating an {@link InterfaceEvent} (and a Pair) per token.  The accessors describe the current event and are
+ * only valid until the next call to {@link #next()}.
+ * <p>
+ * The typed accessors default to parsing {@link #stringValue()}; producers that know a scalar's type can override
+ * them to skip formatting and reparsing.
+ */
+public interface InterfaceEventCursor {
+	/**
+	 * Advance to the next event.
+	 *
+	 * @return False if there are no more events.
+	 */
+	boolean next();
+
+	InterfaceEventKind kind();
+
+	/**
+	 * @return The text of the current key, type or primitive event.
+	 */
+	String stringValue();
+
+	/**
+	 * Cursors that never produce other events don't need to override this.
+	 *
+	 * @return The value of the current other event, or null.
+	 */
+	default Object otherValue() {
+		return null;
+	}
+
+	/**
+	 * @return
+	 * @throws NumberFormatException If the current primitive isn't an integer.
+	 */
+	default int intValue() {
+		return Integer.parseInt(stringValue());
+	}
+
+	/**
+	 * @return
+	 * @throws NumberFormatException If the current primitive isn't an integer.
+	 */
+	default long longValue() {
+		return Long.parseLong(stringValue());
+	}
+
+	/**
+	 * @return
+	 * @throws NumberFormatException If the current primitive isn't a number.
+	 */
+	default double doubleValue() {
+		return Double.parseDouble(stringValue());
+	}
+
+	/**
+	 * @return
+	 * @throws IllegalArgumentException If the current primitive isn't true or false.
+	 */
+	default boolean booleanValue() {
+		final String value = stringValue();
+		if (value.equals("true"))
+			return true;
+		else if (value.equals("false"))
+			return false;
+		else
+			throw new IllegalArgumentException(String.format("Invalid value [%s]", value));
+	}
+
+	/**
+	 * @return The position of the current event in the source document, or null.  Only used in error messages.
+	 */
+	Object position();
+}
@@ -0,0 +1,88 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.rendaw.common.DeadCode;
+
+/**
+ * Presents the current event of an {@link InterfaceEventCursor} as an {@link InterfaceEvent}, reusing one instance
+ * of each event class.  A returned event is only valid until the cursor advances, so consumers must not keep it.
+ * <p>
+ * Primitives are presented with a subclass of {@link InterfacePrimitiveEvent} whose accessors read the cursor
+ * directly, so typed cursors aren't formatted to text.  Read them through the {@code as} methods; the {@link InterfacePrimitiveEvent#value} field
+ * isn't set.
+ */
+public class InterfaceEventFlyweights {
+	final InterfaceEventCursor cursor;
+	private final InterfaceObjectOpenEvent objectOpen = new InterfaceObjectOpenEvent();
+	private final InterfaceObjectCloseEvent objectClose = new InterfaceObjectCloseEvent();
+	private final InterfaceArrayOpenEvent arrayOpen = new InterfaceArrayOpenEvent();
+	private final InterfaceArrayCloseEvent arrayClose = new InterfaceArrayCloseEvent();
+	private final InterfaceKeyEvent key = new InterfaceKeyEvent();
+	private final InterfaceTypeEvent type = new InterfaceTypeEvent();
+	private final CursorPrimitiveEvent primitive = new CursorPrimitiveEvent();
+	private final InterfaceOtherEvent other = new InterfaceOtherEvent();
+
+	public InterfaceEventFlyweights(final InterfaceEventCursor cursor) {
+		this.cursor = cursor;
+	}
+
+	/**
+	 * @return The cursor's current event.
+	 */
+	public InterfaceEvent current() {
+		switch (cursor.kind()) {
+			case OBJECT_OPEN:
+				return objectOpen;
+			case OBJECT_CLOSE:
+				return objectClose;
+			case ARRAY_OPEN:
+				return arrayOpen;
+			case ARRAY_CLOSE:
+				return arrayClose;
+			case KEY:
+				key.value = cursor.stringValue();
+				return key;
+			case TYPE:
+				type.value = cursor.stringValue();
+				return type;
+			case PRIMITIVE:
+				return primitive;
+			case OTHER:
+				other.value = cursor.otherValue();
+				return other;
+			default:
+				throw new DeadCode();
+		}
+	}
+
+	private class CursorPrimitiveEvent extends InterfacePrimitiveEvent {
+		@Override
+		public String asString() {
+			return cursor.stringValue();
+		}
+
+		@Override
+		public int asInt() {
+			return cursor.intValue();
+		}
+
+		@Override
+		public long asLong() {
+			return cursor.longValue();
+		}
+
+		@Override
+		public double asDouble() {
+			return cursor.doubleValue();
+		}
+
+		@Override
+		public boolean asBoolean() {
+			return cursor.booleanValue();
+		}
+
+		@Override
+		public String toString() {
+			return asString();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.zarbosoft.interface1.events;
+
+/**
+ * The kinds of InterfaceEvent, for dispatching without class checks.
+ */
+public enum InterfaceEventKind {
+	OBJECT_OPEN,
+	OBJECT_CLOSE,
+	ARRAY_OPEN,
+	ARRAY_CLOSE,
+	KEY,
+	TYPE,
+	PRIMITIVE,
+	OTHER;
+
+	public static InterfaceEventKind of(final InterfaceEvent e) {
+		if (e.getClass() == InterfaceObjectOpenEvent.class)
+			return OBJECT_OPEN;
+		else if (e.getClass() == InterfaceObjectCloseEvent.class)
+			return OBJECT_CLOSE;
+		else if (e.getClass() == InterfaceArrayOpenEvent.class)
+			return ARRAY_OPEN;
+		else if (e.getClass() == InterfaceArrayCloseEvent.class)
+			return ARRAY_CLOSE;
+		else if (e.getClass() == InterfaceKeyEvent.class)
+			return KEY;
+		else if (e.getClass() == InterfaceTypeEvent.class)
+			return TYPE;
+		else if (e instanceof InterfacePrimitiveEvent)
+			return PRIMITIVE;
+		else if (e.getClass() == InterfaceOtherEvent.class)
+			return OTHER;
+		else
+			throw new AssertionError(String.format("Unknown event type [%s]", e.getClass()));
+	}
+}
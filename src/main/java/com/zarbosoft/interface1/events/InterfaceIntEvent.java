@@ -0,0 +1,37 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Configuration;
+
+@Configuration(name = "int")
+public class InterfaceIntEvent extends InterfacePrimitiveEvent {
+	public InterfaceIntEvent(final int value) {
+		super(Integer.toString(value));
+		this.intValue = value;
+	}
+
+	public InterfaceIntEvent() {
+	}
+
+	@Configuration
+	public int intValue;
+
+	@Override
+	public int asInt() {
+		return intValue;
+	}
+
+	@Override
+	public long asLong() {
+		return intValue;
+	}
+
+	@Override
+	public double asDouble() {
+		return intValue;
+	}
+
+	@Override
+	public boolean asBoolean() {
+		throw new IllegalArgumentException(String.format("Invalid value [%s]", intValue));
+	}
+}
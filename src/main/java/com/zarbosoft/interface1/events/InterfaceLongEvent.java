@@ -0,0 +1,39 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Configuration;
+
+@Configuration(name = "long")
+public class InterfaceLongEvent extends InterfacePrimitiveEvent {
+	public InterfaceLongEvent(final long value) {
+		super(Long.toString(value));
+		this.longValue = value;
+	}
+
+	public InterfaceLongEvent() {
+	}
+
+	@Configuration
+	public long longValue;
+
+	@Override
+	public int asInt() {
+		if ((int) longValue != longValue)
+			throw new NumberFormatException(String.format("Value [%s] out of integer range", longValue));
+		return (int) longValue;
+	}
+
+	@Override
+	public long asLong() {
+		return longValue;
+	}
+
+	@Override
+	public double asDouble() {
+		return longValue;
+	}
+
+	@Override
+	public boolean asBoolean() {
+		throw new IllegalArgumentException(String.format("Invalid value [%s]", longValue));
+	}
+}
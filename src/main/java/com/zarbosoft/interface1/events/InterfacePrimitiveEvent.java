@@ -3,6 +3,12 @@ package com.zarbosoft.interface1.events;
 import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.pidgoon.events.MatchingEvent;
 
+/**
+ * A scalar value as text.  Producers that already know a value's type can send one of the typed subclasses
+ * ({@link InterfaceIntEvent}, {@link InterfaceLongEvent}, {@link InterfaceDoubleEvent},
+ * {@link InterfaceBooleanEvent}) instead, which consumers read through the {@code as} methods without
+ * reparsing.  The typed subclasses also fill in {@link #value} so consumers that read the text still work.
+ */
 @Configuration(name = "primitive")
 public class InterfacePrimitiveEvent implements InterfaceEvent {
 	public InterfacePrimitiveEvent(final String value) {
@@ -15,10 +21,51 @@ public class InterfacePrimitiveEvent implements InterfaceEvent {
 	@Configuration
 	public String value;
 
+	public String asString() {
+		return value;
+	}
+
+	/**
+	 * @return
+	 * @throws NumberFormatException If the value isn't an integer.
+	 */
+	public int asInt() {
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * @return
+	 * @throws NumberFormatException If the value isn't an integer.
+	 */
+	public long asLong() {
+		return Long.parseLong(value);
+	}
+
+	/**
+	 * @return
+	 * @throws NumberFormatException If the value isn't a number.
+	 */
+	public double asDouble() {
+		return Double.parseDouble(value);
+	}
+
+	/**
+	 * @return
+	 * @throws IllegalArgumentException If the value isn't true or false.
+	 */
+	public boolean asBoolean() {
+		if (value.equals("true"))
+			return true;
+		else if (value.equals("false"))
+			return false;
+		else
+			throw new IllegalArgumentException(String.format("Invalid value [%s]", value));
+	}
+
 	@Override
 	public boolean matches(final MatchingEvent event) {
-		return event.getClass() == getClass() &&
-				(value == null || value.equals(((InterfacePrimitiveEvent) event).value));
+		return event instanceof InterfacePrimitiveEvent &&
+				(value == null || value.equals(((InterfacePrimitiveEvent) event).asString()));
 	}
 
 	@Override
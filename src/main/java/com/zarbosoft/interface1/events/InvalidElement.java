@@ -0,0 +1,22 @@
+package com.zarbosoft.interface1.events;
+
+/**
+ * Thrown when one element of a streamed root collection is invalid.  The path includes the element's index or key.
+ */
+public class InvalidElement extends InvalidEventStream {
+	/**
+	 * The position of the element in the root collection, counting from 0.
+	 */
+	public final int index;
+
+	/**
+	 * The element's key if the root is a map, otherwise null.
+	 */
+	public final String key;
+
+	public InvalidElement(final int index, final String key, final InvalidEventStream cause) {
+		super(String.format("Element %s: ", key == null ? index : String.format("%s [%s]", index, key)), cause);
+		this.index = index;
+		this.key = key;
+	}
+}
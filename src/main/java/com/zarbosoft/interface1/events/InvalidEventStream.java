@@ -0,0 +1,36 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.path.InterfacePath;
+
+/**
+ * Thrown when a stream of InterfaceEvents doesn't describe a value of the expected type.
+ */
+public class InvalidEventStream extends RuntimeException {
+	/**
+	 * Where in the document the error occurred.
+	 */
+	public final InterfacePath path;
+
+	/**
+	 * The position that accompanied the offending event, or null.
+	 */
+	public final Object position;
+
+	public InvalidEventStream(final InterfacePath path, final Object position, final String message) {
+		super(position == null ?
+				String.format("At %s: %s", path, message) :
+				String.format("At %s (%s): %s", path, position, message));
+		this.path = path;
+		this.position = position;
+	}
+
+	/**
+	 * @param prefix Context for the cause's message.
+	 * @param cause  The error to take the location from.
+	 */
+	protected InvalidEventStream(final String prefix, final InvalidEventStream cause) {
+		super(prefix + cause.getMessage(), cause);
+		this.path = cause.path;
+		this.position = cause.position;
+	}
+}
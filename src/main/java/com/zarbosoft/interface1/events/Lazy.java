@@ -0,0 +1,35 @@
+package com.zarbosoft.interface1.events;
+
+import java.util.function.Supplier;
+
+/**
+ * A value built the first time it's requested, by one thread.
+ *
+ * @param <T>
+ */
+final class Lazy<T> {
+	private Supplier<T> source;
+	private volatile T value;
+
+	Lazy(final Supplier<T> source) {
+		this.source = source;
+	}
+
+	T get() {
+		T out = value;
+		if (out != null)
+			return out;
+		synchronized (this) {
+			out = value;
+			if (out == null) {
+				value = out = source.get();
+				source = null;
+			}
+		}
+		return out;
+	}
+
+	boolean done() {
+		return value != null;
+	}
+}
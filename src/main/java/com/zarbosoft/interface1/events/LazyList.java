@@ -0,0 +1,51 @@
+package com.zarbosoft.interface1.events;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The value of a lazy list field (see {@link com.zarbosoft.interface1.Configuration#lazy()}).  The elements are
+ * decoded the first time the list is used, from any thread.  Afterward it behaves like the list it decoded.
+ *
+ * @param <E>
+ */
+public class LazyList<E> extends AbstractList<E> {
+	private final Lazy<List<E>> value;
+
+	LazyList(final Supplier<List<E>> source) {
+		this.value = new Lazy<>(source);
+	}
+
+	/**
+	 * @return True if the elements have been decoded.
+	 */
+	public boolean materialized() {
+		return value.done();
+	}
+
+	@Override
+	public E get(final int index) {
+		return value.get().get(index);
+	}
+
+	@Override
+	public int size() {
+		return value.get().size();
+	}
+
+	@Override
+	public E set(final int index, final E element) {
+		return value.get().set(index, element);
+	}
+
+	@Override
+	public void add(final int index, final E element) {
+		value.get().add(index, element);
+	}
+
+	@Override
+	public E remove(final int index) {
+		return value.get().remove(index);
+	}
+}
@@ -0,0 +1,57 @@
+package com.zarbosoft.interface1.events;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The value of a lazy map field (see {@link com.zarbosoft.interface1.Configuration#lazy()}).  The entries are
+ * decoded the first time the map is used, from any thread.  Afterward it behaves like the map it decoded.
+ *
+ * @param <V>
+ */
+public class LazyMap<V> extends AbstractMap<String, V> {
+	private final Lazy<Map<String, V>> value;
+
+	LazyMap(final Supplier<Map<String, V>> source) {
+		this.value = new Lazy<>(source);
+	}
+
+	/**
+	 * @return True if the entries have been decoded.
+	 */
+	public boolean materialized() {
+		return value.done();
+	}
+
+	@Override
+	public Set<Entry<String, V>> entrySet() {
+		return value.get().entrySet();
+	}
+
+	@Override
+	public int size() {
+		return value.get().size();
+	}
+
+	@Override
+	public V get(final Object key) {
+		return value.get().get(key);
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return value.get().containsKey(key);
+	}
+
+	@Override
+	public V put(final String key, final V value) {
+		return this.value.get().put(key, value);
+	}
+
+	@Override
+	public V remove(final Object key) {
+		return value.get().remove(key);
+	}
+}
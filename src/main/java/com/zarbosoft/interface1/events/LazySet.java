@@ -0,0 +1,52 @@
+package com.zarbosoft.interface1.events;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The value of a lazy set field (see {@link com.zarbosoft.interface1.Configuration#lazy()}).  The elements are
+ * decoded the first time the set is used, from any thread.  Afterward it behaves like the set it decoded.
+ *
+ * @param <E>
+ */
+public class LazySet<E> extends AbstractSet<E> {
+	private final Lazy<Set<E>> value;
+
+	LazySet(final Supplier<Set<E>> source) {
+		this.value = new Lazy<>(source);
+	}
+
+	/**
+	 * @return True if the elements have been decoded.
+	 */
+	public boolean materialized() {
+		return value.done();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return value.get().iterator();
+	}
+
+	@Override
+	public int size() {
+		return value.get().size();
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		return value.get().contains(o);
+	}
+
+	@Override
+	public boolean add(final E e) {
+		return value.get().add(e);
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		return value.get().remove(o);
+	}
+}
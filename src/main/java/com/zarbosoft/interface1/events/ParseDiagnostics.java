@@ -0,0 +1,197 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Events;
+import com.zarbosoft.interface1.GrammarCache;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.pidgoon.events.Grammar;
+import com.zarbosoft.pidgoon.events.MatchingEvent;
+import com.zarbosoft.rendaw.common.Pair;
+import org.reflections.Reflections;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Instrumentation for parses with {@link ReadEventGrammar} grammars.  Parsing through this builds a grammar whose
+ * terminals count every match attempt; each event is offered to the terminal of every live branch, so the attempts
+ * per event measure how many branches the parser is tracking.  Attempts, matches and the time spent matching are
+ * recorded per grammar rule (the type, or the type and field, that produced the terminal).  The time spent
+ * constructing objects and setting their fields is recorded per concrete class.
+ * <p>
+ * Instrumented parses are much slower than normal ones.  Not thread safe; use one instance per thread.  Results
+ * accumulate across parses until {@link #reset()}.
+ */
+public class ParseDiagnostics {
+	private final GrammarCache<Grammar> grammars =
+			new GrammarCache<>(64, (reflections, root) -> ReadEventGrammar.buildGrammar(reflections, root, this));
+	private final Map<String, Rule> rules = new TreeMap<>();
+	private final Map<Class<?>, Long> nanosByType = new HashMap<>();
+	private long events = 0;
+	private long branches = 0;
+	private int current = 0;
+	private int peak = 0;
+
+	/**
+	 * Counts for the terminals produced for one type or field.
+	 */
+	public static class Rule {
+		public final Class<?> type;
+		public final String name;
+		public long attempts = 0;
+		public long matches = 0;
+		public long nanos = 0;
+
+		private Rule(final Class<?> type, final String name) {
+			this.type = type;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Parse with an instrumented grammar.  Grammars are built once per Reflections instance and root type per
+	 * instance.
+	 *
+	 * @param reflections
+	 * @param typeInfo
+	 * @param data
+	 * @param <T>
+	 * @return
+	 */
+	public <T> T parse(
+			final Reflections reflections,
+			final Walk.TypeInfo typeInfo,
+			final Stream<Pair<? extends InterfaceEvent, Object>> data
+	) {
+		final Grammar grammar = grammars.get(reflections, typeInfo);
+		try {
+			return Events.parse(grammar, data.peek(pair -> event()));
+		} finally {
+			event();
+		}
+	}
+
+	/**
+	 * Wrap a terminal's pattern to count attempts to match it.
+	 *
+	 * @param type    The type the terminal belongs to.
+	 * @param rule    The name to record the attempts under.
+	 * @param pattern
+	 * @return
+	 */
+	public MatchingEvent wrap(final Class<?> type, final String rule, final MatchingEvent pattern) {
+		final Rule counts = rules.computeIfAbsent(rule, k -> new Rule(type, rule));
+		return new MatchingEvent() {
+			@Override
+			public boolean matches(final MatchingEvent event) {
+				current += 1;
+				counts.attempts += 1;
+				final long start = System.nanoTime();
+				final boolean out = pattern.matches(event);
+				counts.nanos += System.nanoTime() - start;
+				if (out)
+					counts.matches += 1;
+				return out;
+			}
+
+			@Override
+			public String toString() {
+				return pattern.toString();
+			}
+		};
+	}
+
+	/**
+	 * Record time spent constructing an object and setting its fields.
+	 *
+	 * @param klass The object's concrete class.
+	 * @param nanos
+	 */
+	void built(final Class<?> klass, final long nanos) {
+		nanosByType.merge(klass, nanos, Long::sum);
+	}
+
+	/**
+	 * Called as each event is read, finishing the counts for the previous event.
+	 */
+	private void event() {
+		if (current == 0)
+			return;
+		events += 1;
+		branches += current;
+		peak = Math.max(peak, current);
+		current = 0;
+	}
+
+	/**
+	 * Zero all counts.  The rules are kept since the cached grammars' terminals keep reporting to them.
+	 */
+	public void reset() {
+		for (final Rule rule : rules.values()) {
+			rule.attempts = 0;
+			rule.matches = 0;
+			rule.nanos = 0;
+		}
+		nanosByType.clear();
+		events = 0;
+		branches = 0;
+		current = 0;
+		peak = 0;
+	}
+
+	/**
+	 * @return The number of events offered to at least one branch.
+	 */
+	public long events() {
+		return events;
+	}
+
+	/**
+	 * @return The most match attempts (live branches) for a single event.
+	 */
+	public int peakBranches() {
+		return peak;
+	}
+
+	public double averageBranches() {
+		return events == 0 ? 0 : (double) branches / events;
+	}
+
+	/**
+	 * @return Counts per rule, sorted by name.
+	 */
+	public Collection<Rule> rules() {
+		return Collections.unmodifiableCollection(rules.values());
+	}
+
+	/**
+	 * @return Nanoseconds spent constructing objects and setting their fields, per concrete class.
+	 */
+	public Map<Class<?>, Long> nanosByType() {
+		return Collections.unmodifiableMap(nanosByType);
+	}
+
+	/**
+	 * @return A human readable summary, rules with the most attempts first.
+	 */
+	public String report() {
+		final StringBuilder out = new StringBuilder();
+		out.append(String.format("Events: %s, peak branches: %s, average branches: %.2f\n",
+				events,
+				peak,
+				averageBranches()
+		));
+		final List<Rule> sorted = new ArrayList<>(rules.values());
+		sorted.sort((a, b) -> Long.compare(b.attempts, a.attempts));
+		for (final Rule rule : sorted) {
+			if (rule.attempts == 0)
+				continue;
+			out.append(String.format("  %s: %s attempts, %s matches, %.3f ms\n",
+					rule.name,
+					rule.attempts,
+					rule.matches,
+					rule.nanos / 1000000.0
+			));
+		}
+		return out.toString();
+	}
+}
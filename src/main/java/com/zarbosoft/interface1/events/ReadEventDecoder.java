@@ -0,0 +1,1202 @@
+package com.zarbosoft.interface1.events;
+
+import com.zarbosoft.interface1.Configuration;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.jfr.Flight;
+import com.zarbosoft.interface1.path.InterfacePath;
+import com.zarbosoft.interface1.path.InterfacePathProjection;
+import com.zarbosoft.interface1.path.InterfacePathTracker;
+import com.zarbosoft.rendaw.common.DeadCode;
+import com.zarbosoft.rendaw.common.Pair;
+import org.reflections.Reflections;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Deserializes objects from InterfaceEvents without a general parser.  Accepts the same events as the grammar from
+ * {@link ReadEventGrammar#buildGrammar(Reflections, Walk.TypeInfo)} but decides each alternative with at most
+ * one event of lookahead and builds objects in place as their fields arrive.
+ * <p>
+ * The only place the event language needs more than one event to decide is an object open where a concrete type
+ * allows both the full form and the single-required-field shorthand and the shorthand value can also start with an
+ * object open.  There the next event decides: a key naming a field of the type, or a close when the type has no
+ * required fields, selects the full form.
+ * <p>
+ * Rules are created the first time a document needs them: a polymorphic type's subtypes are listed when its first
+ * value is decoded and a subtype's rule is built when a type tag names it.  Building a decoder is constant time and
+ * its size grows with the types documents actually use.
+ * <p>
+ * Parses can be restricted to parts of a document with an {@link InterfacePathProjection}.  Values outside the
+ * projection are skipped by counting opens and closes without running any rules and the fields they would have
+ * filled keep their defaults.  Only the required fields the projection selects are checked.  A shorthand object
+ * doesn't have a path segment for its field so the projection applies to the field as if it were the object.
+ * <p>
+ * A decoder can be shared between threads.
+ */
+public class ReadEventDecoder {
+	private static final InterfaceObjectOpenEvent objectOpen = new InterfaceObjectOpenEvent();
+	private static final InterfaceObjectCloseEvent objectClose = new InterfaceObjectCloseEvent();
+	private static final InterfaceArrayOpenEvent arrayOpen = new InterfaceArrayOpenEvent();
+	private static final InterfaceArrayCloseEvent arrayClose = new InterfaceArrayCloseEvent();
+
+	private final Reflections reflections;
+	private final ConcurrentHashMap<Walk.TypeInfo, Rule> rules = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Class<?>, ConcreteRule> concretes = new ConcurrentHashMap<>();
+	private final Ref root;
+
+	/**
+	 * @param reflections May be null if all polymorphic types are indexed (see {@link Walk#subTypesOf}).
+	 * @param root
+	 */
+	public ReadEventDecoder(final Reflections reflections, final Walk.TypeInfo root) {
+		this.reflections = reflections;
+		this.root = new Ref(root);
+	}
+
+	/**
+	 * @return The number of rules created so far.
+	 */
+	public int ruleCount() {
+		return rules.size() + concretes.size();
+	}
+
+	private Rule rule(final Walk.TypeInfo target) {
+		final Walk.ClassInfo info = Walk.ClassInfo.get((Class<?>) target.type);
+		if (info.kind == Walk.Kind.CONCRETE)
+			return concrete(info);
+		final Rule found = rules.get(target);
+		if (found != null)
+			return found;
+		final Rule created = createRule(target, info);
+		final Rule raced = rules.putIfAbsent(target, created);
+		return raced == null ? created : raced;
+	}
+
+	private ConcreteRule concrete(final Walk.ClassInfo info) {
+		final ConcreteRule found = concretes.get(info.klass);
+		if (found != null)
+			return found;
+		if (!info.constructible)
+			throw new AssertionError(String.format(
+					"Interface class [%s] has no nullary constructor or constructor is not public (maybe the class isn't static).",
+					info.klass
+			));
+		final ConcreteRule created = new ConcreteRule(info);
+		final ConcreteRule raced = concretes.putIfAbsent(info.klass, created);
+		return raced == null ? created : raced;
+	}
+
+	private Rule createRule(final Walk.TypeInfo target, final Walk.ClassInfo info) {
+		switch (info.kind) {
+			case STRING:
+				return new StringRule();
+			case INTEGER:
+				return new IntegerRule();
+			case DOUBLE:
+				return new DoubleRule();
+			case BOOLEAN:
+				return new BooleanRule();
+			case ENUM:
+				return new EnumRule(info.klass);
+			case LIST:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized list!");
+				return lazy(target, new CollectionRule(new Ref(target.parameters[0]), false));
+			case SET:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized set!");
+				return lazy(target, new CollectionRule(new Ref(target.parameters[0]), true));
+			case MAP:
+				if (target.parameters == null)
+					throw new AssertionError("Unparameterized map!");
+				if (target.parameters.length != 2)
+					throw new AssertionError("Map does not have exactly 2 parameters!");
+				if (target.parameters[0].type != String.class)
+					throw new AssertionError("Interfacable maps must have String keys.");
+				return lazy(target, new MapRule(new Ref(target.parameters[1])));
+			case ABSTRACT:
+				return new AbstractRule(target);
+			default:
+				return new OtherRule(info.klass);
+		}
+	}
+
+	/**
+	 * Only the field's own collection is lazy.  The parameters of a field's type share its field, so collections
+	 * nested in a lazy field are decoded normally.
+	 *
+	 * @param target
+	 * @param rule
+	 * @return
+	 */
+	private static Rule lazy(final Walk.TypeInfo target, final Rule rule) {
+		if (target.field == null || !target.field.getAnnotation(Configuration.class).lazy())
+			return rule;
+		if (!target.equals(Walk.TypeInfo.of(target.field)))
+			return rule;
+		return new LazyRule(rule, Walk.ClassInfo.get((Class<?>) target.type).kind);
+	}
+
+	/**
+	 * A rule that's looked up the first time it's used.
+	 */
+	private class Ref {
+		private final Walk.TypeInfo target;
+		private volatile Rule rule;
+
+		private Ref(final Walk.TypeInfo target) {
+			this.target = target;
+		}
+
+		private Rule get() {
+			Rule out = rule;
+			if (out == null)
+				rule = out = rule(target);
+			return out;
+		}
+	}
+
+	/**
+	 * Deserialize an object.
+	 *
+	 * @param data The stream of events and their positions.
+	 * @param <T>  The type this decoder was built for.
+	 * @return The deserialized object, or null if there were no events.
+	 */
+	public <T> T parse(final Stream<Pair<? extends InterfaceEvent, Object>> data) {
+		return parse(data, InterfacePathProjection.ALL);
+	}
+
+	/**
+	 * Deserialize the parts of an object selected by a projection.
+	 *
+	 * @param data       The stream of events and their positions.
+	 * @param projection
+	 * @param <T>        The type this decoder was built for.
+	 * @return The deserialized object, or null if there were no events.
+	 */
+	public <T> T parse(
+			final Stream<Pair<? extends InterfaceEvent, Object>> data, final InterfacePathProjection projection
+	) {
+		final Incremental<T> incremental = incremental(projection);
+		final Iterator<Pair<? extends InterfaceEvent, Object>> iterator = data.iterator();
+		while (iterator.hasNext()) {
+			final Pair<? extends InterfaceEvent, Object> pair = iterator.next();
+			incremental.feed(pair.first, pair.second);
+		}
+		return incremental.finish();
+	}
+
+	/**
+	 * Deserialize an object from a cursor.  Doesn't allocate anything per event beyond what the cursor and the
+	 * deserialized values need.
+	 *
+	 * @param cursor
+	 * @param <T>    The type this decoder was built for.
+	 * @return The deserialized object, or null if there were no events.
+	 */
+	public <T> T parse(final InterfaceEventCursor cursor) {
+		return this.<T>incremental().feed(cursor).finish();
+	}
+
+	/**
+	 * Deserialize the parts of an object selected by a projection from a cursor.
+	 *
+	 * @param cursor
+	 * @param projection
+	 * @param <T>        The type this decoder was built for.
+	 * @return The deserialized object, or null if there were no events.
+	 */
+	public <T> T parse(final InterfaceEventCursor cursor, final InterfacePathProjection projection) {
+		return this.<T>incremental(projection).feed(cursor).finish();
+	}
+
+	/**
+	 * Start a deserialization that's fed events as they become available.
+	 *
+	 * @param <T> The type this decoder was built for.
+	 * @return
+	 */
+	public <T> Incremental<T> incremental() {
+		return incremental(InterfacePathProjection.ALL);
+	}
+
+	/**
+	 * Start a deserialization of the parts of an object selected by a projection that's fed events as they become
+	 * available.
+	 *
+	 * @param projection
+	 * @param <T>        The type this decoder was built for.
+	 * @return
+	 */
+	public <T> Incremental<T> incremental(final InterfacePathProjection projection) {
+		return new Incremental<>(projection, "");
+	}
+
+	/**
+	 * Start a deserialization of a value nested in a larger document, for instance one element of a list that's
+	 * read piecewise.
+	 *
+	 * @param location The path of the value in the document, prefixed to the paths in errors.
+	 * @param <T>      The type this decoder was built for.
+	 * @return
+	 */
+	public <T> Incremental<T> incremental(final String location) {
+		return new Incremental<>(InterfacePathProjection.ALL, location);
+	}
+
+	/**
+	 * A deserialization in progress.  Events are pushed in with the feed methods, in as many batches as needed; all
+	 * state is kept here between calls so a single thread can interleave any number of documents.
+	 * <p>
+	 * Not thread safe.  After a feed method throws the deserialization can't continue.
+	 *
+	 * @param <T> The type the decoder was built for.
+	 */
+	public class Incremental<T> {
+		private final Decode decode;
+		private InterfaceEventFlyweights flyweights;
+
+		private Incremental(final InterfacePathProjection projection, final String location) {
+			decode = new Decode(root.get(),
+					projection,
+					Flight.available ? Flight.recorder.parse("decoder", root.target) : null,
+					location
+			);
+		}
+
+		/**
+		 * @param event
+		 * @param position The position of the event in the source, for error messages.  May be null.
+		 * @return this
+		 */
+		public Incremental<T> feed(final InterfaceEvent event, final Object position) {
+			decode.event(event, position);
+			return this;
+		}
+
+		/**
+		 * @param events Events and their positions.
+		 * @return this
+		 */
+		public Incremental<T> feed(final Iterable<? extends Pair<? extends InterfaceEvent, Object>> events) {
+			for (final Pair<? extends InterfaceEvent, Object> pair : events)
+				decode.event(pair.first, pair.second);
+			return this;
+		}
+
+		/**
+		 * Feed every event remaining in the cursor.  A cursor over a buffer can return false from
+		 * {@link InterfaceEventCursor#next()} when the buffer is exhausted and be fed again when more data arrives.
+		 *
+		 * @param cursor
+		 * @return this
+		 */
+		public Incremental<T> feed(final InterfaceEventCursor cursor) {
+			if (flyweights == null || flyweights.cursor != cursor)
+				flyweights = new InterfaceEventFlyweights(cursor);
+			while (cursor.next())
+				decode.event(flyweights.current(), cursor.position());
+			return this;
+		}
+
+		/**
+		 * @return True once a complete root value has been received.  Any further events are errors.
+		 */
+		public boolean complete() {
+			return decode.root.done;
+		}
+
+		/**
+		 * Signal the end of the document.
+		 *
+		 * @return The deserialized object, or null if there were no events.
+		 * @throws InvalidEventStream If the document is incomplete.
+		 */
+		public T finish() {
+			return decode.finish();
+		}
+	}
+
+	/**
+	 * The state of a single deserialization.
+	 */
+	private static class Decode {
+		private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+		private final RootFrame root;
+		private final InterfacePathTracker path;
+		private Object position;
+		private final SkipFrame skip = new SkipFrame();
+
+		/**
+		 * The projection node for the next value to start.  Set by container frames before starting each child.
+		 */
+		private InterfacePathProjection selected;
+
+		/**
+		 * Null unless the parse is being recorded.  Cleared once the event is committed.
+		 */
+		private Flight.Parse flight;
+
+		/**
+		 * @param rule
+		 * @param projection
+		 * @param flight
+		 * @param location   The path of the value being decoded, for error messages.
+		 */
+		private Decode(
+				final Rule rule,
+				final InterfacePathProjection projection,
+				final Flight.Parse flight,
+				final String location
+		) {
+			path = new InterfacePathTracker(location);
+			root = new RootFrame(rule);
+			selected = projection;
+			this.flight = flight;
+			stack.push(root);
+		}
+
+		private void event(final InterfaceEvent event, final Object position) {
+			if (flight != null)
+				flight.event();
+			this.position = position;
+			path.push(event);
+			dispatch(event);
+		}
+
+		private void dispatch(final InterfaceEvent event) {
+			stack.peek().event(this, event);
+		}
+
+		private <T> T finish() {
+			if (stack.size() > 1)
+				throw error("Unexpected end of document.");
+			if (flight != null) {
+				flight.finish();
+				flight = null;
+			}
+			return (T) root.value;
+		}
+
+		private void created() {
+			if (flight != null)
+				flight.object();
+		}
+
+		private void push(final Frame frame) {
+			frame.selected = selected;
+			stack.push(frame);
+		}
+
+		/**
+		 * Skip the next value.
+		 */
+		private void skip() {
+			skip.depth = 0;
+			stack.push(skip);
+		}
+
+		private void pop() {
+			stack.pop();
+		}
+
+		private void complete(final Object value) {
+			stack.peek().value(this, value);
+		}
+
+		private InvalidEventStream error(final String format, final Object... args) {
+			final InterfacePath at = path.snapshot();
+			if (flight != null) {
+				flight.fail(at);
+				flight = null;
+			}
+			return new InvalidEventStream(at, position, String.format(format, args));
+		}
+
+		private InvalidEventStream unexpected(final InterfaceEvent event, final String expected) {
+			return error("Expected %s but got [%s].", expected, event);
+		}
+	}
+
+	private abstract static class Rule {
+		private volatile EnumSet<InterfaceEventKind> first;
+
+		/**
+		 * Handle the first event of a value.  Either completes the value or pushes a frame to handle the following
+		 * events.
+		 *
+		 * @param decode
+		 * @param event
+		 */
+		abstract void start(Decode decode, InterfaceEvent event);
+
+		/**
+		 * @return The kinds of event a value of this rule can start with.
+		 */
+		EnumSet<InterfaceEventKind> first() {
+			EnumSet<InterfaceEventKind> out = first;
+			if (out == null)
+				first = out = first(new HashSet<>());
+			return out;
+		}
+
+		/**
+		 * @param visiting Rules whose first sets are being computed, to stop at cycles.  Results computed while a
+		 *                 cycle is open may be incomplete so they aren't stored.
+		 * @return
+		 */
+		EnumSet<InterfaceEventKind> first(final Set<Rule> visiting) {
+			final EnumSet<InterfaceEventKind> out = first;
+			if (out != null)
+				return out;
+			if (!visiting.add(this))
+				return EnumSet.noneOf(InterfaceEventKind.class);
+			final EnumSet<InterfaceEventKind> computed = computeFirst(visiting);
+			visiting.remove(this);
+			return computed;
+		}
+
+		abstract EnumSet<InterfaceEventKind> computeFirst(Set<Rule> visiting);
+	}
+
+	private abstract static class PrimitiveRule extends Rule {
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			if (!(event instanceof InterfacePrimitiveEvent))
+				throw decode.unexpected(event, "primitive");
+			decode.complete(convert(decode, (InterfacePrimitiveEvent) event));
+		}
+
+		abstract Object convert(Decode decode, InterfacePrimitiveEvent event);
+
+		/**
+		 * Convert a value and store it in a field.  Overridden for primitive fields to avoid boxing.
+		 *
+		 * @param decode
+		 * @param field
+		 * @param out
+		 * @param event
+		 */
+		void assign(
+				final Decode decode, final Walk.FieldInfo field, final Object out, final InterfacePrimitiveEvent event
+		) {
+			field.set(out, convert(decode, event));
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			return EnumSet.of(InterfaceEventKind.PRIMITIVE);
+		}
+	}
+
+	private static class StringRule extends PrimitiveRule {
+		@Override
+		Object convert(final Decode decode, final InterfacePrimitiveEvent event) {
+			return event.asString();
+		}
+	}
+
+	private static class IntegerRule extends PrimitiveRule {
+		private int parse(final Decode decode, final InterfacePrimitiveEvent event) {
+			try {
+				return event.asInt();
+			} catch (final NumberFormatException e) {
+				throw decode.error("Invalid integer [%s].", event);
+			}
+		}
+
+		@Override
+		Object convert(final Decode decode, final InterfacePrimitiveEvent event) {
+			return parse(decode, event);
+		}
+
+		@Override
+		void assign(
+				final Decode decode, final Walk.FieldInfo field, final Object out, final InterfacePrimitiveEvent event
+		) {
+			if (field.primitive)
+				field.setInt(out, parse(decode, event));
+			else
+				super.assign(decode, field, out, event);
+		}
+	}
+
+	private static class DoubleRule extends PrimitiveRule {
+		private double parse(final Decode decode, final InterfacePrimitiveEvent event) {
+			try {
+				return event.asDouble();
+			} catch (final NumberFormatException e) {
+				throw decode.error("Invalid double [%s].", event);
+			}
+		}
+
+		@Override
+		Object convert(final Decode decode, final InterfacePrimitiveEvent event) {
+			return parse(decode, event);
+		}
+
+		@Override
+		void assign(
+				final Decode decode, final Walk.FieldInfo field, final Object out, final InterfacePrimitiveEvent event
+		) {
+			if (field.primitive)
+				field.setDouble(out, parse(decode, event));
+			else
+				super.assign(decode, field, out, event);
+		}
+	}
+
+	private static class BooleanRule extends PrimitiveRule {
+		private boolean parse(final Decode decode, final InterfacePrimitiveEvent event) {
+			try {
+				return event.asBoolean();
+			} catch (final IllegalArgumentException e) {
+				throw decode.error("Invalid value [%s].", event);
+			}
+		}
+
+		@Override
+		Object convert(final Decode decode, final InterfacePrimitiveEvent event) {
+			return parse(decode, event);
+		}
+
+		@Override
+		void assign(
+				final Decode decode, final Walk.FieldInfo field, final Object out, final InterfacePrimitiveEvent event
+		) {
+			if (field.primitive)
+				field.setBoolean(out, parse(decode, event));
+			else
+				super.assign(decode, field, out, event);
+		}
+	}
+
+	private static class EnumRule extends PrimitiveRule {
+		private final Map<String, Enum<?>> values;
+
+		private EnumRule(final Class<?> enumClass) {
+			values = Walk.ClassInfo.get(enumClass).enumsByName;
+		}
+
+		@Override
+		Object convert(final Decode decode, final InterfacePrimitiveEvent event) {
+			final String name = event.asString();
+			final Enum<?> value = values.get(name);
+			if (value == null)
+				throw decode.error("Unknown value [%s].", name);
+			return value;
+		}
+	}
+
+	private class CollectionRule extends Rule {
+		private final Ref inner;
+		private final boolean set;
+
+		private CollectionRule(final Ref inner, final boolean set) {
+			this.inner = inner;
+			this.set = set;
+		}
+
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			if (event.getClass() != InterfaceArrayOpenEvent.class)
+				throw decode.unexpected(event, "array");
+			decode.push(new CollectionFrame(inner.get(), set ? new HashSet<>() : new ArrayList<>()));
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			return EnumSet.of(InterfaceEventKind.ARRAY_OPEN);
+		}
+	}
+
+	private class MapRule extends Rule {
+		private final Ref inner;
+
+		private MapRule(final Ref inner) {
+			this.inner = inner;
+		}
+
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			if (event.getClass() != InterfaceObjectOpenEvent.class)
+				throw decode.unexpected(event, "object");
+			decode.push(new MapFrame(inner.get()));
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			return EnumSet.of(InterfaceEventKind.OBJECT_OPEN);
+		}
+	}
+
+	/**
+	 * A collection field marked lazy.  Captures the collection's events and completes with a collection that decodes
+	 * them with the inner rule when it's first used.
+	 */
+	private static class LazyRule extends Rule {
+		private final Rule inner;
+		private final Walk.Kind kind;
+
+		private LazyRule(final Rule inner, final Walk.Kind kind) {
+			this.inner = inner;
+			this.kind = kind;
+		}
+
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			if (!inner.first().contains(InterfaceEventKind.of(event))) {
+				// Report the error
+				inner.start(decode, event);
+				return;
+			}
+			final CaptureFrame frame = new CaptureFrame(this, decode.path.toString(decode.path.depth() - 1));
+			decode.push(frame);
+			frame.event(decode, event);
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			return inner.first(visiting);
+		}
+	}
+
+	private class AbstractRule extends Rule {
+		private final Walk.TypeInfo target;
+		private volatile Derived derived;
+
+		private AbstractRule(final Walk.TypeInfo target) {
+			this.target = target;
+		}
+
+		/**
+		 * Subtypes are listed on first use rather than when the rule is created.
+		 *
+		 * @return
+		 */
+		private Derived derived() {
+			Derived out = derived;
+			if (out == null)
+				derived = out = new Derived(target);
+			return out;
+		}
+
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			final Derived derived = derived();
+			if (event.getClass() == InterfaceTypeEvent.class) {
+				final String name = ((InterfaceTypeEvent) event).value;
+				final Ref found = derived.types.get(name);
+				if (found == null)
+					throw decode.error("Unknown type [%s].", name);
+				decode.push(new TaggedFrame(found.get()));
+				return;
+			}
+			if (derived.def == null)
+				throw decode.unexpected(event, "type");
+			derived.def.get().start(decode, event);
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			final EnumSet<InterfaceEventKind> out = EnumSet.of(InterfaceEventKind.TYPE);
+			final Derived derived = derived();
+			if (derived.def != null)
+				out.addAll(derived.def.get().first(visiting));
+			return out;
+		}
+	}
+
+	private class Derived {
+		/**
+		 * Rules by lowercased type name.
+		 */
+		private final Map<String, Ref> types;
+		private final Ref def;
+
+		private Derived(final Walk.TypeInfo target) {
+			final Class<?> defClass;
+			if (target.field != null)
+				defClass = target.field.getAnnotation(Configuration.class).typeless();
+			else
+				defClass = null;
+			Ref def = null;
+			types = new HashMap<>();
+			for (final Class<?> klass : Walk.derivedTypes(reflections, target)) {
+				final Ref ref = new Ref(Walk.TypeInfo.of(klass));
+				types.put(Walk.ClassInfo.get(klass).name.toLowerCase(), ref);
+				if (klass.equals(defClass))
+					def = ref;
+			}
+			this.def = def;
+		}
+	}
+
+	private class FieldRule {
+		private final int index;
+		private final Walk.FieldInfo info;
+		private final Ref rule;
+
+		private FieldRule(final int index, final Walk.FieldInfo info) {
+			this.index = index;
+			this.info = info;
+			this.rule = new Ref(info.type);
+		}
+	}
+
+	private class ConcreteRule extends Rule {
+		private final Walk.ClassInfo info;
+		private final List<FieldRule> fields;
+		private final FieldRule shorthand;
+
+		/**
+		 * Fields by serialized name, so finding a key's field doesn't depend on the number of fields.
+		 */
+		private final Map<String, FieldRule> byName;
+
+		/**
+		 * The indexes of the required fields.
+		 */
+		private final BitSet required = new BitSet();
+
+		private ConcreteRule(final Walk.ClassInfo info) {
+			this.info = info;
+			fields = new ArrayList<>();
+			byName = new HashMap<>();
+			for (final Walk.FieldInfo field : info.fields) {
+				final FieldRule rule = new FieldRule(fields.size(), field);
+				fields.add(rule);
+				byName.put(field.name, rule);
+				if (field.required)
+					required.set(rule.index);
+			}
+			List<FieldRule> minimalFields = fields.stream().filter(f -> f.info.required).collect(Collectors.toList());
+			if (minimalFields.isEmpty())
+				minimalFields = fields;
+			shorthand = minimalFields.size() == 1 ? minimalFields.get(0) : null;
+		}
+
+		private FieldRule field(final String name) {
+			return byName.get(name);
+		}
+
+		private boolean hasRequired() {
+			return !required.isEmpty();
+		}
+
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			final InterfaceEventKind kind = InterfaceEventKind.of(event);
+			if (kind == InterfaceEventKind.OBJECT_OPEN) {
+				if (shorthand != null && shorthand.rule.get().first().contains(kind))
+					decode.push(new PendingFrame(this));
+				else
+					decode.push(new ObjectFrame(decode, this));
+			} else if (shorthand != null && shorthand.rule.get().first().contains(kind)) {
+				decode.push(new ShorthandFrame(this));
+				shorthand.rule.get().start(decode, event);
+			} else
+				throw decode.unexpected(event, "object");
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			final EnumSet<InterfaceEventKind> out = EnumSet.of(InterfaceEventKind.OBJECT_OPEN);
+			if (shorthand != null)
+				out.addAll(shorthand.rule.get().first(visiting));
+			return out;
+		}
+	}
+
+	private static class OtherRule extends Rule {
+		private final Class<?> otherClass;
+
+		private OtherRule(final Class<?> otherClass) {
+			this.otherClass = otherClass;
+		}
+
+		@Override
+		void start(final Decode decode, final InterfaceEvent event) {
+			if (event.getClass() != InterfaceOtherEvent.class ||
+					!otherClass.isAssignableFrom(((InterfaceOtherEvent) event).value.getClass()))
+				throw decode.unexpected(event, otherClass.getName());
+			decode.complete(((InterfaceOtherEvent) event).value);
+		}
+
+		@Override
+		EnumSet<InterfaceEventKind> computeFirst(final Set<Rule> visiting) {
+			return EnumSet.of(InterfaceEventKind.OTHER);
+		}
+	}
+
+	private abstract static class Frame {
+		/**
+		 * The projection node for this frame's value.
+		 */
+		InterfacePathProjection selected;
+
+		abstract void event(Decode decode, InterfaceEvent event);
+
+		void value(final Decode decode, final Object value) {
+			throw new DeadCode();
+		}
+	}
+
+	private static class RootFrame extends Frame {
+		private final Rule rule;
+		private boolean done = false;
+		private Object value;
+
+		private RootFrame(final Rule rule) {
+			this.rule = rule;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			if (done)
+				throw decode.unexpected(event, "end of document");
+			rule.start(decode, event);
+		}
+
+		@Override
+		void value(final Decode decode, final Object value) {
+			this.done = true;
+			this.value = value;
+		}
+	}
+
+	private static class CollectionFrame extends Frame {
+		private final Rule inner;
+		private final Collection<Object> out;
+		private int index = -1;
+
+		private CollectionFrame(final Rule inner, final Collection<Object> out) {
+			this.inner = inner;
+			this.out = out;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			if (event.getClass() == InterfaceArrayCloseEvent.class) {
+				decode.pop();
+				decode.complete(out);
+				return;
+			}
+			index += 1;
+			final InterfacePathProjection child = selected.child(index);
+			if (child == null) {
+				decode.skip();
+				decode.dispatch(event);
+			} else {
+				decode.selected = child;
+				inner.start(decode, event);
+			}
+		}
+
+		@Override
+		void value(final Decode decode, final Object value) {
+			out.add(value);
+		}
+	}
+
+	private static class MapFrame extends Frame {
+		private final Rule inner;
+		private final Map<String, Object> out = new HashMap<>();
+		private String key = null;
+
+		private MapFrame(final Rule inner) {
+			this.inner = inner;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			if (key != null) {
+				final InterfacePathProjection child = selected.child(key);
+				if (child == null) {
+					key = null;
+					decode.skip();
+					decode.dispatch(event);
+				} else {
+					decode.selected = child;
+					inner.start(decode, event);
+				}
+			} else if (event.getClass() == InterfaceKeyEvent.class)
+				key = ((InterfaceKeyEvent) event).value;
+			else if (event.getClass() == InterfaceObjectCloseEvent.class) {
+				decode.pop();
+				decode.complete(out);
+			} else
+				throw decode.unexpected(event, "key or object end");
+		}
+
+		@Override
+		void value(final Decode decode, final Object value) {
+			out.put(key, value);
+			key = null;
+		}
+	}
+
+	private static class ObjectFrame extends Frame {
+		private final ConcreteRule rule;
+		private final Object out;
+		private final BitSet seen = new BitSet();
+		private FieldRule current = null;
+
+		private ObjectFrame(final Decode decode, final ConcreteRule rule) {
+			this.rule = rule;
+			this.out = rule.info.newInstance();
+			decode.created();
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			if (current != null) {
+				final Rule fieldRule = current.rule.get();
+				if (current.info.primitive && event instanceof InterfacePrimitiveEvent) {
+					((PrimitiveRule) fieldRule).assign(decode, current.info, out, (InterfacePrimitiveEvent) event);
+					current = null;
+				} else
+					fieldRule.start(decode, event);
+			}
+			else if (event.getClass() == InterfaceKeyEvent.class) {
+				final String name = ((InterfaceKeyEvent) event).value;
+				final FieldRule field = rule.field(name);
+				if (field == null)
+					throw decode.error("Unknown field [%s] in [%s].", name, rule.info.name);
+				if (seen.get(field.index))
+					throw decode.error("Duplicate field [%s].", name);
+				seen.set(field.index);
+				final InterfacePathProjection child = selected.child(field.info.name);
+				if (child == null)
+					decode.skip();
+				else {
+					decode.selected = child;
+					current = field;
+				}
+			} else if (event.getClass() == InterfaceObjectCloseEvent.class) {
+				for (int i = rule.required.nextSetBit(0); i >= 0; i = rule.required.nextSetBit(i + 1)) {
+					if (seen.get(i))
+						continue;
+					final FieldRule field = rule.fields.get(i);
+					if (selected.child(field.info.name) != null)
+						throw decode.error("Missing required field [%s] in [%s].", field.info.name, rule.info.name);
+				}
+				decode.pop();
+				decode.complete(out);
+			} else
+				throw decode.unexpected(event, "key or object end");
+		}
+
+		@Override
+		void value(final Decode decode, final Object value) {
+			current.info.set(out, value);
+			current = null;
+		}
+	}
+
+	/**
+	 * Copies the events of a lazy collection.
+	 */
+	private static class CaptureFrame extends Frame {
+		private final LazyRule rule;
+		private final String location;
+		private final List<InterfaceEvent> events = new ArrayList<>();
+		private final List<Object> positions = new ArrayList<>();
+		private int depth = 0;
+
+		private CaptureFrame(final LazyRule rule, final String location) {
+			this.rule = rule;
+			this.location = location;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			final InterfaceEventKind kind = InterfaceEventKind.of(event);
+			events.add(copy(kind, event));
+			positions.add(decode.position);
+			switch (kind) {
+				case OBJECT_OPEN:
+				case ARRAY_OPEN:
+					depth += 1;
+					return;
+				case OBJECT_CLOSE:
+				case ARRAY_CLOSE:
+					depth -= 1;
+					break;
+				default:
+					return;
+			}
+			if (depth != 0)
+				return;
+			decode.pop();
+			switch (rule.kind) {
+				case LIST:
+					decode.complete(new LazyList<>(this::decode));
+					break;
+				case SET:
+					decode.complete(new LazySet<>(this::decode));
+					break;
+				case MAP:
+					decode.complete(new LazyMap<>(this::decode));
+					break;
+				default:
+					throw new DeadCode();
+			}
+		}
+
+		private <T> T decode() {
+			final Decode decode = new Decode(rule.inner, selected, null, location);
+			for (int i = 0; i < events.size(); ++i)
+				decode.event(events.get(i), positions.get(i));
+			return decode.finish();
+		}
+
+		/**
+		 * Events may be reused by the producer (see {@link InterfaceEventFlyweights}) so keep copies.
+		 *
+		 * @param kind
+		 * @param event
+		 * @return
+		 */
+		private static InterfaceEvent copy(final InterfaceEventKind kind, final InterfaceEvent event) {
+			switch (kind) {
+				case OBJECT_OPEN:
+					return objectOpen;
+				case OBJECT_CLOSE:
+					return objectClose;
+				case ARRAY_OPEN:
+					return arrayOpen;
+				case ARRAY_CLOSE:
+					return arrayClose;
+				case KEY:
+					return new InterfaceKeyEvent(((InterfaceKeyEvent) event).value);
+				case TYPE:
+					return new InterfaceTypeEvent(((InterfaceTypeEvent) event).value);
+				case PRIMITIVE: {
+					final InterfacePrimitiveEvent primitive = (InterfacePrimitiveEvent) event;
+					if (event.getClass() == InterfaceIntEvent.class)
+						return new InterfaceIntEvent(primitive.asInt());
+					if (event.getClass() == InterfaceLongEvent.class)
+						return new InterfaceLongEvent(primitive.asLong());
+					if (event.getClass() == InterfaceDoubleEvent.class)
+						return new InterfaceDoubleEvent(primitive.asDouble());
+					if (event.getClass() == InterfaceBooleanEvent.class)
+						return new InterfaceBooleanEvent(primitive.asBoolean());
+					return new InterfacePrimitiveEvent(primitive.asString());
+				}
+				case OTHER:
+					return new InterfaceOtherEvent(((InterfaceOtherEvent) event).value);
+				default:
+					throw new DeadCode();
+			}
+		}
+	}
+
+	/**
+	 * Consumes one value without decoding it.  Only counts opens and closes so skipping is cheap.
+	 */
+	private static class SkipFrame extends Frame {
+		private int depth;
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			switch (InterfaceEventKind.of(event)) {
+				case OBJECT_OPEN:
+				case ARRAY_OPEN:
+					depth += 1;
+					return;
+				case OBJECT_CLOSE:
+				case ARRAY_CLOSE:
+					depth -= 1;
+					break;
+				case KEY:
+				case TYPE:
+					return;
+				default:
+					break;
+			}
+			if (depth == 0)
+				decode.pop();
+		}
+	}
+
+	/**
+	 * Decides between the full and shorthand forms of an object after seeing the event following the object open.
+	 */
+	private static class PendingFrame extends Frame {
+		private final ConcreteRule rule;
+
+		private PendingFrame(final ConcreteRule rule) {
+			this.rule = rule;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			decode.pop();
+			decode.selected = selected;
+			final boolean full;
+			if (event.getClass() == InterfaceKeyEvent.class)
+				full = rule.field(((InterfaceKeyEvent) event).value) != null;
+			else if (event.getClass() == InterfaceObjectCloseEvent.class)
+				full = !rule.hasRequired();
+			else
+				full = false;
+			if (full) {
+				final ObjectFrame frame = new ObjectFrame(decode, rule);
+				decode.push(frame);
+				frame.event(decode, event);
+			} else {
+				decode.push(new ShorthandFrame(rule));
+				rule.shorthand.rule.get().start(decode, objectOpen);
+				decode.dispatch(event);
+			}
+		}
+	}
+
+	/**
+	 * Receives the single field value of an object in shorthand form.
+	 */
+	private static class ShorthandFrame extends Frame {
+		private final ConcreteRule rule;
+
+		private ShorthandFrame(final ConcreteRule rule) {
+			this.rule = rule;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			throw new DeadCode();
+		}
+
+		@Override
+		void value(final Decode decode, final Object value) {
+			final Object out = rule.info.newInstance();
+			decode.created();
+			rule.shorthand.info.set(out, value);
+			decode.pop();
+			decode.complete(out);
+		}
+	}
+
+	/**
+	 * Passes the event following a type tag to the tagged type's rule.
+	 */
+	private static class TaggedFrame extends Frame {
+		private final Rule rule;
+
+		private TaggedFrame(final Rule rule) {
+			this.rule = rule;
+		}
+
+		@Override
+		void event(final Decode decode, final InterfaceEvent event) {
+			decode.pop();
+			decode.selected = selected;
+			rule.start(decode, event);
+		}
+	}
+}
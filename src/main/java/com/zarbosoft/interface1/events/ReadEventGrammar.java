@@ -2,6 +2,7 @@ package com.zarbosoft.interface1.events;
 
 import com.zarbosoft.interface1.Configuration;
 import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.jfr.Flight;
 import com.zarbosoft.pidgoon.AbortParse;
 import com.zarbosoft.pidgoon.Node;
 import com.zarbosoft.pidgoon.events.*;
@@ -19,27 +20,59 @@ import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import static com.zarbosoft.rendaw.common.Common.uncheck;
-
 public class ReadEventGrammar {
 	public static Grammar buildGrammar(final Reflections reflections, final Walk.TypeInfo root) {
+		return buildGrammar(reflections, root, null);
+	}
+
+	/**
+	 * @param reflections
+	 * @param root
+	 * @param diagnostics If not null, every terminal in the grammar reports its match attempts here.  A grammar
+	 *                    built with diagnostics should only be used by one parse at a time.
+	 * @return
+	 */
+	public static Grammar buildGrammar(
+			final Reflections reflections, final Walk.TypeInfo root, final ParseDiagnostics diagnostics
+	) {
+		final Flight.GrammarBuild flight = Flight.available ? Flight.recorder.grammarBuild(root) : null;
+		// Keys of the rules added besides the root
 		final HashSet<Object> seen = new HashSet<>();
+		final Grammar grammar;
+		try {
+			grammar = build(reflections, root, diagnostics, seen);
+		} catch (final RuntimeException | Error e) {
+			if (flight != null)
+				flight.abandon();
+			throw e;
+		}
+		if (flight != null)
+			flight.finish(seen.size() + 1);
+		return grammar;
+	}
+
+	private static Grammar build(
+			final Reflections reflections,
+			final Walk.TypeInfo root,
+			final ParseDiagnostics diagnostics,
+			final HashSet<Object> seen
+	) {
 		final Grammar grammar = new Grammar();
 		grammar.add("root", new Union().add(Walk.walk(reflections, root, new Walk.Visitor<Node>() {
 			@Override
 			public Node visitString(final Field field) {
-				return new Operator(new MatchingEventTerminal(new InterfacePrimitiveEvent(null)), s -> {
+				return new Operator(terminal(diagnostics, field, String.class, new InterfacePrimitiveEvent(null)), s -> {
 					final InterfacePrimitiveEvent event = (InterfacePrimitiveEvent) s.top();
-					return s.pushStack(event.value);
+					return s.pushStack(event.asString());
 				});
 			}
 
 			@Override
 			public Node visitInteger(final Field field) {
-				return new Operator(new MatchingEventTerminal(new InterfacePrimitiveEvent(null)), s -> {
+				return new Operator(terminal(diagnostics, field, Integer.class, new InterfacePrimitiveEvent(null)), s -> {
 					final InterfacePrimitiveEvent event = (InterfacePrimitiveEvent) s.top();
 					try {
-						return s.pushStack(Integer.valueOf(event.value));
+						return s.pushStack(event.asInt());
 					} catch (final NumberFormatException e) {
 						throw new AbortParse(e);
 					}
@@ -48,10 +81,10 @@ public class ReadEventGrammar {
 
 			@Override
 			public Node visitDouble(final Field field) {
-				return new Operator(new MatchingEventTerminal(new InterfacePrimitiveEvent(null)), s -> {
+				return new Operator(terminal(diagnostics, field, Double.class, new InterfacePrimitiveEvent(null)), s -> {
 					final InterfacePrimitiveEvent event = (InterfacePrimitiveEvent) s.top();
 					try {
-						return s.pushStack(Double.valueOf(event.value));
+						return s.pushStack(event.asDouble());
 					} catch (final NumberFormatException e) {
 						throw new AbortParse(e);
 					}
@@ -60,32 +93,32 @@ public class ReadEventGrammar {
 
 			@Override
 			public Node visitBoolean(final Field field) {
-				return new Operator(new MatchingEventTerminal(new InterfacePrimitiveEvent(null)), s -> {
+				return new Operator(terminal(diagnostics, field, Boolean.class, new InterfacePrimitiveEvent(null)), s -> {
 					final InterfacePrimitiveEvent event = (InterfacePrimitiveEvent) s.top();
-					if (event.value.equals("true"))
-						return s.pushStack(true);
-					else if (event.value.equals("false"))
-						return s.pushStack(false);
-					else
-						throw new AbortParse(String.format("Invalid value [%s]", event.value));
+					try {
+						return s.pushStack(event.asBoolean());
+					} catch (final IllegalArgumentException e) {
+						throw new AbortParse(e.getMessage());
+					}
 				});
 			}
 
 			@Override
 			public Node visitEnum(final Field field, final Class<?> enumClass) {
-				final Union union = new Union();
-				Walk.enumValues(enumClass).forEach(pair -> {
-					union.add(new Operator(new MatchingEventTerminal(new InterfacePrimitiveEvent(Walk.decideName(pair.second))),
-							store -> store.pushStack(pair.first)
-					));
+				final Map<String, Enum<?>> values = Walk.ClassInfo.get(enumClass).enumsByName;
+				return new Operator(terminal(diagnostics, field, enumClass, new InterfacePrimitiveEvent(null)), s -> {
+					final InterfacePrimitiveEvent event = (InterfacePrimitiveEvent) s.top();
+					final Enum<?> value = values.get(event.asString());
+					if (value == null)
+						throw new AbortParse(String.format("Unknown value [%s]", event.asString()));
+					return s.pushStack(value);
 				});
-				return union;
 			}
 
 			@Override
 			public Node visitList(final Field field, final Node inner) {
 				return new Sequence()
-						.add(new Operator(new MatchingEventTerminal(new InterfaceArrayOpenEvent()),
+						.add(new Operator(terminal(diagnostics, field, List.class, new InterfaceArrayOpenEvent()),
 								s -> s.pushStack(0)
 						))
 						.add(new Repeat(new Operator(inner, s -> {
@@ -95,7 +128,11 @@ public class ReadEventGrammar {
 							s = (Store) s.popStack();
 							return s.pushStack(temp).pushStack(count + 1);
 						})))
-						.add(new Operator(new MatchingEventTerminal(new InterfaceArrayCloseEvent()), s -> {
+						.add(new Operator(terminal(diagnostics,
+								field,
+								List.class,
+								new InterfaceArrayCloseEvent()
+						), s -> {
 							final List out = new ArrayList();
 							s = (Store) Helper.stackPopSingleList(s, out::add);
 							Collections.reverse(out);
@@ -106,7 +143,7 @@ public class ReadEventGrammar {
 			@Override
 			public Node visitSet(final Field field, final Node inner) {
 				return new Sequence()
-						.add(new Operator(new MatchingEventTerminal(new InterfaceArrayOpenEvent()),
+						.add(new Operator(terminal(diagnostics, field, Set.class, new InterfaceArrayOpenEvent()),
 								s -> s.pushStack(0)
 						))
 						.add(new Repeat(new Operator(inner, s -> {
@@ -116,7 +153,11 @@ public class ReadEventGrammar {
 							s = (Store) s.popStack();
 							return s.pushStack(temp).pushStack(count + 1);
 						})))
-						.add(new Operator(new MatchingEventTerminal(new InterfaceArrayCloseEvent()), s -> {
+						.add(new Operator(terminal(diagnostics,
+								field,
+								Set.class,
+								new InterfaceArrayCloseEvent()
+						), s -> {
 							final Set out = new HashSet();
 							s = (Store) Helper.stackPopSingleList(s, (Consumer<Object>) out::add);
 							return s.pushStack(out);
@@ -126,15 +167,15 @@ public class ReadEventGrammar {
 			@Override
 			public Node visitMap(final Field field, final Node inner) {
 				return new Sequence()
-						.add(new Operator(new MatchingEventTerminal(new InterfaceObjectOpenEvent()),
+						.add(new Operator(terminal(diagnostics, field, Map.class, new InterfaceObjectOpenEvent()),
 								s -> s.pushStack(0)
 						))
 						.add(new Repeat(new Sequence()
-								.add(new Operator(new MatchingEventTerminal(new InterfaceKeyEvent(null)),
+								.add(new Operator(terminal(diagnostics, field, Map.class, new InterfaceKeyEvent(null)),
 										store -> store.pushStack(((InterfaceKeyEvent) store.top()).value)
 								))
 								.add(new Operator(inner, Helper::stackDoubleElement))))
-						.add(new Operator(new MatchingEventTerminal(new InterfaceObjectCloseEvent()), s -> {
+						.add(new Operator(terminal(diagnostics, field, Map.class, new InterfaceObjectCloseEvent()), s -> {
 							final Map out = new HashMap();
 							s = (Store) Helper.<Pair<String, Object>>stackPopSingleList(s,
 									p -> out.put(p.first, p.second)
@@ -162,7 +203,7 @@ public class ReadEventGrammar {
 						if (s.first.equals(def))
 							out.add(s.second);
 						out.add(new Sequence()
-								.add(new MatchingEventTerminal(new InterfaceTypeEvent(Walk
+								.add(terminal(diagnostics, field, klass, new InterfaceTypeEvent(Walk
 										.decideName(s.first)
 										.toLowerCase())))
 								.add(s.second));
@@ -181,29 +222,35 @@ public class ReadEventGrammar {
 			public void visitConcrete(
 					final Field field, final Class<?> klass, final List<Pair<Field, Node>> fields
 			) {
+				seen.add(klass);
+				final Walk.ClassInfo info = Walk.ClassInfo.get(klass);
+				final List<Walk.FieldInfo> infos = info.fields;
+				final List<Pair<Walk.FieldInfo, Node>> fields2 = new ArrayList<>();
+				for (int i = 0; i < fields.size(); ++i)
+					fields2.add(new Pair<>(infos.get(i), fields.get(i).second));
 				final Sequence seq = new Sequence();
 				{
-					seq.add(new Operator(new MatchingEventTerminal(new InterfaceObjectOpenEvent()),
+					seq.add(new Operator(terminal(diagnostics, null, klass, new InterfaceObjectOpenEvent()),
 							s -> s.pushStack(0)
 					));
 					final com.zarbosoft.pidgoon.nodes.Set set = new com.zarbosoft.pidgoon.nodes.Set();
-					fields.forEach(f -> {
+					fields2.forEach(f -> {
 						set.add(new Operator(new Sequence()
-								.add(new MatchingEventTerminal(new InterfaceKeyEvent(Walk.decideName(f.first))))
+								.add(terminal(diagnostics, f.first.field, klass, new InterfaceKeyEvent(f.first.name)))
 								.add(f.second), s -> {
 							s = (Store) s.pushStack(f.first);
 							return Helper.stackDoubleElement(s);
-						}), fieldIsRequired(f.first));
+						}), f.first.required);
 					});
 					seq.add(set);
-					seq.add(new MatchingEventTerminal(new InterfaceObjectCloseEvent()));
+					seq.add(terminal(diagnostics, null, klass, new InterfaceObjectCloseEvent()));
 				}
 				final Node topNode;
-				final List<Pair<Field, Node>> minimalFields2 =
-						fields.stream().filter(f -> fieldIsRequired(f.first)).collect(Collectors.toList());
-				final List<Pair<Field, Node>> minimalFields;
+				final List<Pair<Walk.FieldInfo, Node>> minimalFields2 =
+						fields2.stream().filter(f -> f.first.required).collect(Collectors.toList());
+				final List<Pair<Walk.FieldInfo, Node>> minimalFields;
 				if (minimalFields2.size() == 0)
-					minimalFields = fields;
+					minimalFields = fields2;
 				else
 					minimalFields = minimalFields2;
 				if (minimalFields.size() == 1) {
@@ -219,29 +266,20 @@ public class ReadEventGrammar {
 					topNode = seq;
 				}
 				grammar.add(klass.getTypeName(), new Operator(topNode, s -> {
-					final Object out = uncheck(klass::newInstance);
-					s = (Store) Helper.<Pair<Object, Field>>stackPopSingleList(s, (pair) -> {
-						uncheck(() -> {
-							// Something crazy going on here; changes with assignment via reflection were only visible
-							// via reflection sometimes (nondeterministic).  Using a setter instead fixed this.
-							// Total hack.
-							try {
-								out
-										.getClass()
-										.getMethod(pair.second.getName(), pair.second.getType())
-										.invoke(out, pair.first);
-							} catch (final NoSuchMethodException e) {
-								pair.second.set(out, pair.first);
-							}
-						});
-					});
+					final long start = diagnostics == null ? 0 : System.nanoTime();
+					final Object out = info.newInstance();
+					s = (Store) Helper.<Pair<Object, Walk.FieldInfo>>stackPopSingleList(s,
+							(pair) -> pair.second.set(out, pair.first)
+					);
+					if (diagnostics != null)
+						diagnostics.built(klass, System.nanoTime() - start);
 					return s.pushStack(out);
 				}));
 			}
 
 			@Override
 			public Node visitOther(final Field field, final Class<?> otherClass) {
-				return new Operator(new MatchingEventTerminal(new MatchingEvent() {
+				return new Operator(terminal(diagnostics, field, otherClass, new MatchingEvent() {
 					@Override
 					public boolean matches(final MatchingEvent event) {
 						return event instanceof InterfaceOtherEvent &&
@@ -256,16 +294,13 @@ public class ReadEventGrammar {
 		return grammar;
 	}
 
-	private static boolean fieldIsRequired(final Field field) {
-		if (Collection.class.isAssignableFrom(field.getType()))
-			return false;
-		if (Map.class.isAssignableFrom(field.getType()))
-			return false;
-		final Configuration annotation = field.getAnnotation(Configuration.class);
-		if (annotation == null)
-			return false;
-		if (annotation.optional())
-			return false;
-		return true;
+	private static Node terminal(
+			final ParseDiagnostics diagnostics, final Field field, final Class<?> klass, final MatchingEvent pattern
+	) {
+		if (diagnostics == null)
+			return new MatchingEventTerminal(pattern);
+		final Class<?> type = field == null ? klass : field.getDeclaringClass();
+		final String rule = field == null ? klass.getName() : String.format("%s.%s", type.getName(), field.getName());
+		return new MatchingEventTerminal(diagnostics.wrap(type, rule, pattern));
 	}
 }
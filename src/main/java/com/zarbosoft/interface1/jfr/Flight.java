@@ -0,0 +1,124 @@
+package com.zarbosoft.interface1.jfr;
+
+import com.zarbosoft.interface1.Walk;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Java Flight Recorder support.  The event classes extend {@code jdk.jfr.Event}, which isn't present before Java 11
+ * (or 8u262), so they're compiled separately from {@code src/main/jfr} when building on Java 11 or later and the
+ * library only reaches them through the interfaces here.  If JFR or the event classes aren't available
+ * {@link #recorder} is null and they're never loaded.
+ * <p>
+ * The events are enabled, disabled and given thresholds by name in JFR settings like any other event:
+ * <ul>
+ * <li>{@code com.zarbosoft.interface1.GrammarBuild}</li>
+ * <li>{@code com.zarbosoft.interface1.Parse}</li>
+ * <li>{@code com.zarbosoft.interface1.Walk}</li>
+ * </ul>
+ * When an event is disabled or nothing is recording, instrumented operations only check a flag.
+ */
+public final class Flight {
+	/**
+	 * Creates events, or null if JFR isn't available.
+	 */
+	public static final Recorder recorder = detect();
+	public static final boolean available = recorder != null;
+
+	/**
+	 * Grammar build events in progress on any thread.
+	 */
+	static final AtomicInteger building = new AtomicInteger();
+
+	private Flight() {
+	}
+
+	private static Recorder detect() {
+		try {
+			Class.forName("jdk.jfr.Event", false, Flight.class.getClassLoader());
+			return (Recorder) Class
+					.forName("com.zarbosoft.interface1.jfr.JfrRecorder", true, Flight.class.getClassLoader())
+					.getConstructor()
+					.newInstance();
+		} catch (final ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return True if a grammar build is being recorded, so subtype scans should be timed.
+	 */
+	public static boolean building() {
+		return building.get() > 0;
+	}
+
+	public interface Recorder {
+		/**
+		 * @param engine
+		 * @param root
+		 * @return An event to finish when the parse is done, or null if the event isn't enabled.
+		 */
+		Parse parse(String engine, Walk.TypeInfo root);
+
+		/**
+		 * @param walker
+		 * @param root
+		 * @return An event to finish when the walk is done, or null if the event isn't enabled.
+		 */
+		Walking walk(String walker, Walk.TypeInfo root);
+
+		/**
+		 * @param root
+		 * @return An event to finish when the build is done, or null if the event isn't enabled.
+		 */
+		GrammarBuild grammarBuild(Walk.TypeInfo root);
+
+		/**
+		 * Add time spent finding subtypes to the build in progress on this thread, if any.
+		 *
+		 * @param nanos
+		 */
+		void scanned(long nanos);
+	}
+
+	/**
+	 * A document parsed by a grammar or decoder.
+	 */
+	public interface Parse {
+		void event();
+
+		void object();
+
+		void finish();
+
+		/**
+		 * @param path Where the parse failed.
+		 */
+		void fail(Object path);
+	}
+
+	/**
+	 * An object walk.
+	 */
+	public interface Walking {
+		/**
+		 * @param visitor
+		 * @return A visitor that counts visited objects into this event and passes everything on to visitor.
+		 */
+		Walk.ObjectVisitor count(Walk.ObjectVisitor visitor);
+
+		void finish();
+	}
+
+	/**
+	 * A grammar built by {@code ReadEventGrammar.buildGrammar}.
+	 */
+	public interface GrammarBuild {
+		void finish(int ruleCount);
+
+		/**
+		 * End the build without recording it, if it failed.
+		 */
+		void abandon();
+	}
+}
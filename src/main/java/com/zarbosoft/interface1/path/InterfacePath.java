@@ -32,7 +32,7 @@ public abstract class InterfacePath {
 			return key(((InterfaceKeyEvent) e).value);
 		} else if (e.getClass() == InterfaceTypeEvent.class) {
 			return type();
-		} else if (e.getClass() == InterfacePrimitiveEvent.class) {
+		} else if (e instanceof InterfacePrimitiveEvent) {
 			return value();
 		} else if (e.getClass() == InterfaceOtherEvent.class) {
 			return value();
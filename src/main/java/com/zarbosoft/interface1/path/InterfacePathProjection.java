@@ -0,0 +1,117 @@
+package com.zarbosoft.interface1.path;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of path patterns selecting parts of a document.  Patterns are written like {@link InterfacePath} strings,
+ * a segment per object key or array index, with {@code *} matching any key or index:
+ * <code>/items/&#42;/id</code> selects the id of every item.  A pattern selects the whole subtree under the last segment.
+ * <p>
+ * Each instance is a node in a tree of the patterns: {@link #child(String)} and {@link #child(int)} return the node
+ * for a key or index below this one or null if nothing below it is selected.
+ */
+public class InterfacePathProjection {
+	/**
+	 * Selects everything.
+	 */
+	public static final InterfacePathProjection ALL = new InterfacePathProjection();
+
+	static {
+		ALL.all = true;
+	}
+
+	private boolean all = false;
+	private final Map<String, InterfacePathProjection> children = new HashMap<>();
+	private final Map<Integer, InterfacePathProjection> indexes = new HashMap<>();
+	private InterfacePathProjection wildcard = null;
+
+	private InterfacePathProjection() {
+	}
+
+	public static InterfacePathProjection of(final String... patterns) {
+		final InterfacePathProjection root = new InterfacePathProjection();
+		for (final String pattern : patterns) {
+			InterfacePathProjection node = root;
+			for (final String segment : pattern.split("/")) {
+				if (segment.isEmpty())
+					continue;
+				node = node.add(segment);
+			}
+			node.all = true;
+		}
+		root.merge();
+		return root;
+	}
+
+	private InterfacePathProjection add(final String segment) {
+		if (segment.equals("*")) {
+			if (wildcard == null)
+				wildcard = new InterfacePathProjection();
+			return wildcard;
+		}
+		return children.computeIfAbsent(segment, k -> new InterfacePathProjection());
+	}
+
+	/**
+	 * Copy the patterns under other into this node.
+	 *
+	 * @param other
+	 */
+	private void absorb(final InterfacePathProjection other) {
+		all = all || other.all;
+		for (final Map.Entry<String, InterfacePathProjection> entry : other.children.entrySet())
+			add(entry.getKey()).absorb(entry.getValue());
+		if (other.wildcard != null)
+			add("*").absorb(other.wildcard);
+	}
+
+	/**
+	 * Copy wildcard patterns into the named children so lookups only need to check one node.
+	 */
+	private void merge() {
+		for (final Map.Entry<String, InterfacePathProjection> entry : children.entrySet()) {
+			if (wildcard != null)
+				entry.getValue().absorb(wildcard);
+			entry.getValue().merge();
+			try {
+				indexes.put(Integer.parseInt(entry.getKey()), entry.getValue());
+			} catch (final NumberFormatException e) {
+				// Not an index
+			}
+		}
+		if (wildcard != null)
+			wildcard.merge();
+	}
+
+	/**
+	 * @return True if everything below this node is selected.
+	 */
+	public boolean all() {
+		return all;
+	}
+
+	/**
+	 * @param key An object key.
+	 * @return The node for the key or null if nothing under the key is selected.
+	 */
+	public InterfacePathProjection child(final String key) {
+		if (all)
+			return this;
+		final InterfacePathProjection found = children.get(key);
+		return found != null ? found : wildcard;
+	}
+
+	/**
+	 * @param index An array index.
+	 * @return The node for the index or null if nothing under the index is selected.
+	 */
+	public InterfacePathProjection child(final int index) {
+		if (all)
+			return this;
+		if (indexes.isEmpty())
+			return wildcard;
+		final InterfacePathProjection found = indexes.get(index);
+		return found != null ? found : wildcard;
+	}
+}
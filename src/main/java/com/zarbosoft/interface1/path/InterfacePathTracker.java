@@ -0,0 +1,129 @@
+package com.zarbosoft.interface1.path;
+
+import com.zarbosoft.interface1.events.InterfaceEvent;
+import com.zarbosoft.interface1.events.InterfaceEventKind;
+import com.zarbosoft.interface1.events.InterfaceKeyEvent;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the location in a document like a chain of {@link InterfacePath}s built with
+ * {@link InterfacePath#push(InterfaceEvent)}, but updates a stack in place instead of allocating per event.  Use
+ * {@link #snapshot()} or {@link #toString()} to get the location when it's needed, for instance when reporting an
+ * error.
+ */
+public class InterfacePathTracker {
+	private final String root;
+	private int depth = 0;
+	private boolean[] arrays = new boolean[8];
+	private String[] keys = new String[8];
+	private int[] indexes = new int[8];
+
+	/**
+	 * Whether the last event in an array level was a type, in which case the following value doesn't advance the
+	 * index.
+	 */
+	private boolean[] typed = new boolean[8];
+
+	public InterfacePathTracker(final String root) {
+		this.root = root;
+	}
+
+	/**
+	 * @return The number of open objects and arrays.
+	 */
+	public int depth() {
+		return depth;
+	}
+
+	public void push(final InterfaceEvent e) {
+		switch (InterfaceEventKind.of(e)) {
+			case OBJECT_OPEN:
+				open(false);
+				break;
+			case ARRAY_OPEN:
+				open(true);
+				break;
+			case OBJECT_CLOSE:
+			case ARRAY_CLOSE:
+				if (depth > 0)
+					depth -= 1;
+				break;
+			case KEY:
+				if (depth > 0 && !arrays[depth - 1])
+					keys[depth - 1] = ((InterfaceKeyEvent) e).value;
+				break;
+			case TYPE:
+				if (depth > 0 && arrays[depth - 1]) {
+					indexes[depth - 1] += 1;
+					typed[depth - 1] = true;
+				}
+				break;
+			case PRIMITIVE:
+			case OTHER:
+				value();
+				break;
+		}
+	}
+
+	private void value() {
+		if (depth == 0 || !arrays[depth - 1])
+			return;
+		if (typed[depth - 1])
+			typed[depth - 1] = false;
+		else
+			indexes[depth - 1] += 1;
+	}
+
+	private void open(final boolean array) {
+		value();
+		if (depth == arrays.length) {
+			final int size = depth * 2;
+			arrays = Arrays.copyOf(arrays, size);
+			keys = Arrays.copyOf(keys, size);
+			indexes = Arrays.copyOf(indexes, size);
+			typed = Arrays.copyOf(typed, size);
+		}
+		arrays[depth] = array;
+		keys[depth] = null;
+		indexes[depth] = -1;
+		typed[depth] = false;
+		depth += 1;
+	}
+
+	/**
+	 * @return An immutable path for the current location.
+	 */
+	public InterfacePath snapshot() {
+		InterfacePath out = new InterfaceRootPath(root);
+		for (int i = 0; i < depth; ++i) {
+			if (arrays[i])
+				out = new InterfaceArrayPath(out, typed[i], indexes[i]);
+			else
+				out = new InterfaceObjectPath(out, keys[i]);
+		}
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		return toString(depth);
+	}
+
+	/**
+	 * @param depth At most {@link #depth()}.
+	 * @return The path of an enclosing location, as text.
+	 */
+	public String toString(final int depth) {
+		final StringBuilder out = new StringBuilder(root);
+		for (int i = 0; i < depth; ++i) {
+			out.append('/');
+			if (arrays[i]) {
+				if (indexes[i] != -1)
+					out.append(indexes[i]);
+			} else if (keys[i] != null)
+				out.append(keys[i]);
+		}
+		return out.toString();
+	}
+}
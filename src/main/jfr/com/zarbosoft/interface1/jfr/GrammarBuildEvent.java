@@ -0,0 +1,74 @@
+package com.zarbosoft.interface1.jfr;
+
+import com.zarbosoft.interface1.Walk;
+import jdk.jfr.*;
+
+/**
+ * A grammar built by {@code ReadEventGrammar.buildGrammar}.
+ */
+@Name("com.zarbosoft.interface1.GrammarBuild")
+@Label("Grammar Build")
+@Category("Interface")
+@StackTrace(false)
+public class GrammarBuildEvent extends Event implements Flight.GrammarBuild {
+	private static final ThreadLocal<GrammarBuildEvent> current = new ThreadLocal<>();
+
+	@Label("Root Type")
+	public String rootType;
+
+	@Label("Rule Count")
+	public int ruleCount;
+
+	@Label("Subtype Scan Time")
+	@Timespan
+	public long subtypeScan;
+
+	private GrammarBuildEvent previous;
+
+	/**
+	 * @param root
+	 * @return An event to finish when the build is done, or null if the event isn't enabled.
+	 */
+	public static GrammarBuildEvent start(final Walk.TypeInfo root) {
+		final GrammarBuildEvent event = new GrammarBuildEvent();
+		if (!event.isEnabled())
+			return null;
+		event.rootType = root.toString();
+		event.previous = current.get();
+		current.set(event);
+		Flight.building.incrementAndGet();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Add time spent finding subtypes to the build in progress on this thread, if any.
+	 *
+	 * @param nanos
+	 */
+	public static void scanned(final long nanos) {
+		final GrammarBuildEvent event = current.get();
+		if (event != null)
+			event.subtypeScan += nanos;
+	}
+
+	@Override
+	public void finish(final int ruleCount) {
+		this.ruleCount = ruleCount;
+		restore();
+		commit();
+	}
+
+	@Override
+	public void abandon() {
+		restore();
+	}
+
+	private void restore() {
+		Flight.building.decrementAndGet();
+		if (previous == null)
+			current.remove();
+		else
+			current.set(previous);
+	}
+}
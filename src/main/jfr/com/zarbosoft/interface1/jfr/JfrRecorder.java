@@ -0,0 +1,28 @@
+package com.zarbosoft.interface1.jfr;
+
+import com.zarbosoft.interface1.Walk;
+
+/**
+ * Creates the JFR events.  Loaded by {@link Flight} only if {@code jdk.jfr.Event} exists.
+ */
+public class JfrRecorder implements Flight.Recorder {
+	@Override
+	public Flight.Parse parse(final String engine, final Walk.TypeInfo root) {
+		return ParseEvent.start(engine, root);
+	}
+
+	@Override
+	public Flight.Walking walk(final String walker, final Walk.TypeInfo root) {
+		return WalkEvent.start(walker, root);
+	}
+
+	@Override
+	public Flight.GrammarBuild grammarBuild(final Walk.TypeInfo root) {
+		return GrammarBuildEvent.start(root);
+	}
+
+	@Override
+	public void scanned(final long nanos) {
+		GrammarBuildEvent.scanned(nanos);
+	}
+}
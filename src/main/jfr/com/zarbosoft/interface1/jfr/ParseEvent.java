@@ -0,0 +1,70 @@
+package com.zarbosoft.interface1.jfr;
+
+import com.zarbosoft.interface1.Walk;
+import jdk.jfr.*;
+
+/**
+ * A document parsed by a grammar or decoder.
+ */
+@Name("com.zarbosoft.interface1.Parse")
+@Label("Parse")
+@Category("Interface")
+@StackTrace(false)
+public class ParseEvent extends Event implements Flight.Parse {
+	@Label("Root Type")
+	public String rootType;
+
+	@Label("Engine")
+	public String engine;
+
+	@Label("Event Count")
+	public long eventCount;
+
+	/**
+	 * Objects of concrete types created.  Only counted by the decoder.
+	 */
+	@Label("Object Count")
+	public long objectCount;
+
+	/**
+	 * The location of the error if the parse failed, otherwise null.
+	 */
+	@Label("Failure Path")
+	public String failurePath;
+
+	/**
+	 * @param engine
+	 * @param root
+	 * @return An event to finish when the parse is done, or null if the event isn't enabled.
+	 */
+	public static ParseEvent start(final String engine, final Walk.TypeInfo root) {
+		final ParseEvent event = new ParseEvent();
+		if (!event.isEnabled())
+			return null;
+		event.engine = engine;
+		event.rootType = root.toString();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void event() {
+		eventCount += 1;
+	}
+
+	@Override
+	public void object() {
+		objectCount += 1;
+	}
+
+	@Override
+	public void finish() {
+		commit();
+	}
+
+	@Override
+	public void fail(final Object path) {
+		failurePath = String.valueOf(path);
+		commit();
+	}
+}
@@ -0,0 +1,186 @@
+package com.zarbosoft.interface1.jfr;
+
+import com.zarbosoft.interface1.Walk;
+import jdk.jfr.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An object walk.
+ */
+@Name("com.zarbosoft.interface1.Walk")
+@Label("Object Walk")
+@Category("Interface")
+@StackTrace(false)
+public class WalkEvent extends Event implements Flight.Walking {
+	@Label("Root Type")
+	public String rootType;
+
+	@Label("Walker")
+	public String walker;
+
+	/**
+	 * Objects of concrete types entered.
+	 */
+	@Label("Objects Visited")
+	public long objectsVisited;
+
+	/**
+	 * @param walker
+	 * @param root
+	 * @return An event to finish when the walk is done, or null if the event isn't enabled.
+	 */
+	public static WalkEvent start(final String walker, final Walk.TypeInfo root) {
+		final WalkEvent event = new WalkEvent();
+		if (!event.isEnabled())
+			return null;
+		event.walker = walker;
+		event.rootType = root.toString();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public Walk.ObjectVisitor count(final Walk.ObjectVisitor visitor) {
+		return new Counter(visitor);
+	}
+
+	@Override
+	public void finish() {
+		commit();
+	}
+
+	private class Counter implements Walk.ObjectVisitor {
+		private final Walk.ObjectVisitor inner;
+
+		private Counter(final Walk.ObjectVisitor inner) {
+			this.inner = inner;
+		}
+
+		@Override
+		public void visitString(final String value) {
+			inner.visitString(value);
+		}
+
+		@Override
+		public void visitInteger(final Integer value) {
+			inner.visitInteger(value);
+		}
+
+		@Override
+		public void visitDouble(final Double value) {
+			inner.visitDouble(value);
+		}
+
+		@Override
+		public void visitBoolean(final Boolean value) {
+			inner.visitBoolean(value);
+		}
+
+		@Override
+		public void visitInt(final int value) {
+			inner.visitInt(value);
+		}
+
+		@Override
+		public void visitDouble(final double value) {
+			inner.visitDouble(value);
+		}
+
+		@Override
+		public void visitBoolean(final boolean value) {
+			inner.visitBoolean(value);
+		}
+
+		@Override
+		public boolean wantsFieldValues() {
+			return inner.wantsFieldValues();
+		}
+
+		@Override
+		public void visitEnum(final Enum value) {
+			inner.visitEnum(value);
+		}
+
+		@Override
+		public void visitListStart(final List value) {
+			inner.visitListStart(value);
+		}
+
+		@Override
+		public void visitListEnd(final List value) {
+			inner.visitListEnd(value);
+		}
+
+		@Override
+		public void visitSetStart(final Set value) {
+			inner.visitSetStart(value);
+		}
+
+		@Override
+		public void visitSetEnd(final Set value) {
+			inner.visitSetEnd(value);
+		}
+
+		@Override
+		public void visitMapStart(final Map value) {
+			inner.visitMapStart(value);
+		}
+
+		@Override
+		public void visitKeyBegin(final String key) {
+			inner.visitKeyBegin(key);
+		}
+
+		@Override
+		public void visitKeyEnd(final String key) {
+			inner.visitKeyEnd(key);
+		}
+
+		@Override
+		public void visitMapEnd(final Map value) {
+			inner.visitMapEnd(value);
+		}
+
+		@Override
+		public boolean visitAbstractBegin(final Class<?> klass, final Object value) {
+			return inner.visitAbstractBegin(klass, value);
+		}
+
+		@Override
+		public void visitAbstractEnd(final Class<?> klass, final Object value) {
+			inner.visitAbstractEnd(klass, value);
+		}
+
+		@Override
+		public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+			final boolean enter = inner.visitConcreteBegin(klass, value);
+			if (enter)
+				objectsVisited += 1;
+			return enter;
+		}
+
+		@Override
+		public void visitFieldBegin(final Field field, final Object value) {
+			inner.visitFieldBegin(field, value);
+		}
+
+		@Override
+		public void visitFieldEnd(final Field field, final Object value) {
+			inner.visitFieldEnd(field, value);
+		}
+
+		@Override
+		public void visitConcreteEnd(final Class<?> klass, final Object value) {
+			inner.visitConcreteEnd(klass, value);
+		}
+
+		@Override
+		public void visitOther(final Object value) {
+			inner.visitOther(value);
+		}
+	}
+}
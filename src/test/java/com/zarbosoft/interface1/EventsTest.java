@@ -0,0 +1,737 @@
+package com.zarbosoft.interface1;
+
+import com.zarbosoft.interface1.events.*;
+import com.zarbosoft.interface1.path.InterfacePathProjection;
+import com.zarbosoft.rendaw.common.Pair;
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.zarbosoft.interface1.WalkTest.Circle;
+import static com.zarbosoft.interface1.WalkTest.Color;
+import static com.zarbosoft.interface1.WalkTest.Group;
+import static com.zarbosoft.interface1.WalkTest.Shape;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventsTest {
+	private static final Reflections reflections = new Reflections("com.zarbosoft.interface1");
+
+	@Configuration(name = "holder")
+	public static class Holder {
+		@Configuration
+		public Circle circle;
+
+		@Configuration(optional = true, typeless = Circle.class)
+		public Shape shape;
+	}
+
+	public static Stream<Pair<? extends InterfaceEvent, Object>> events(final InterfaceEvent... events) {
+		return Arrays.stream(events).map(e -> new Pair<>(e, null));
+	}
+
+	public static InterfaceEvent primitive(final String value) {
+		return new InterfacePrimitiveEvent(value);
+	}
+
+	public static InterfaceEvent key(final String value) {
+		return new InterfaceKeyEvent(value);
+	}
+
+	public static InterfaceEvent type(final String value) {
+		return new InterfaceTypeEvent(value);
+	}
+
+	public static final InterfaceEvent objectOpen = new InterfaceObjectOpenEvent();
+	public static final InterfaceEvent objectClose = new InterfaceObjectCloseEvent();
+	public static final InterfaceEvent arrayOpen = new InterfaceArrayOpenEvent();
+	public static final InterfaceEvent arrayClose = new InterfaceArrayCloseEvent();
+
+	public static InterfaceEvent[] groupEvents() {
+		return new InterfaceEvent[] {
+				type("group"),
+				objectOpen,
+				key("name"),
+				primitive("outer"),
+				key("weight"),
+				primitive("4"),
+				key("visible"),
+				primitive("true"),
+				key("children"),
+				arrayOpen,
+				type("circle"),
+				primitive("2.5"),
+				type("circle"),
+				objectOpen,
+				key("radius"),
+				primitive("1"),
+				key("color"),
+				primitive("red"),
+				objectClose,
+				arrayClose,
+				key("tags"),
+				objectOpen,
+				key("a"),
+				primitive("1"),
+				objectClose,
+				objectClose
+		};
+	}
+
+	@Test
+	public void testDecodeGroup() {
+		final Group group = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(groupEvents())
+		);
+		assertEquals("outer", group.name);
+		assertEquals(4, group.weight);
+		assertEquals(true, group.visible);
+		assertEquals(Color.GREEN, group.color);
+		assertEquals(2, group.children.size());
+		assertEquals(2.5, ((Circle) group.children.get(0)).radius, 0);
+		assertEquals(1.0, ((Circle) group.children.get(1)).radius, 0);
+		assertEquals(Color.RED, group.children.get(1).color);
+		assertEquals(1, (int) group.tags.get("a"));
+	}
+
+	@Test
+	public void testDecodeTypedPrimitives() {
+		final Group group = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(type("group"),
+						objectOpen,
+						key("name"),
+						primitive("typed"),
+						key("weight"),
+						new InterfaceIntEvent(7),
+						key("visible"),
+						new InterfaceBooleanEvent(true),
+						key("children"),
+						arrayOpen,
+						type("circle"),
+						new InterfaceDoubleEvent(1.5),
+						arrayClose,
+						key("tags"),
+						objectOpen,
+						key("a"),
+						new InterfaceIntEvent(3),
+						objectClose,
+						objectClose
+				)
+		);
+		assertEquals(7, group.weight);
+		assertEquals(true, group.visible);
+		assertEquals(1.5, ((Circle) group.children.get(0)).radius, 0);
+		assertEquals(3, (int) group.tags.get("a"));
+	}
+
+	@Test
+	public void testGrammarTypedPrimitives() {
+		final Group group = Events.parse(Events.Engine.GRAMMAR,
+				reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(type("group"),
+						objectOpen,
+						key("name"),
+						primitive("typed"),
+						key("weight"),
+						new InterfaceIntEvent(7),
+						key("visible"),
+						new InterfaceBooleanEvent(true),
+						key("children"),
+						arrayOpen,
+						type("circle"),
+						new InterfaceDoubleEvent(1.5),
+						arrayClose,
+						key("tags"),
+						objectOpen,
+						key("a"),
+						new InterfaceLongEvent(3),
+						objectClose,
+						objectClose
+				)
+		);
+		assertEquals(7, group.weight);
+		assertEquals(true, group.visible);
+		assertEquals(1.5, ((Circle) group.children.get(0)).radius, 0);
+		assertEquals(3, (int) group.tags.get("a"));
+	}
+
+	@Test
+	public void testTypedPrimitivesHaveText() {
+		assertEquals("7", new InterfaceIntEvent(7).value);
+		assertEquals("3", new InterfaceLongEvent(3).value);
+		assertEquals("1.5", new InterfaceDoubleEvent(1.5).value);
+		assertEquals("true", new InterfaceBooleanEvent(true).value);
+
+		// Walked as a model, the inherited text field is present
+		final WalkTest.RecordingVisitor walked = new WalkTest.RecordingVisitor();
+		Walk.walk(Walk.TypeInfo.of(InterfaceIntEvent.class), new InterfaceIntEvent(7), walked);
+		assertTrue(walked.events.contains("string 7"));
+	}
+
+	@Test(expected = InvalidEventStream.class)
+	public void testDecodeTypedMismatch() {
+		Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Holder.class),
+				events(objectOpen, key("radius"), new InterfaceBooleanEvent(true), objectClose)
+		);
+	}
+
+	@Test
+	public void testDecodeEmpty() {
+		assertNull(Events.parse(Events.Engine.DECODER, reflections, Walk.TypeInfo.of(Shape.class), events()));
+	}
+
+	@Test(expected = InvalidEventStream.class)
+	public void testDecodeMissingRequired() {
+		Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(type("group"), objectOpen, key("name"), primitive("outer"), objectClose)
+		);
+	}
+
+	@Test(expected = InvalidEventStream.class)
+	public void testDecodeDuplicateField() {
+		Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(type("circle"),
+						objectOpen,
+						key("radius"),
+						primitive("1"),
+						key("radius"),
+						primitive("2"),
+						objectClose
+				)
+		);
+	}
+
+	@Test(expected = InvalidEventStream.class)
+	public void testDecodeUnknownEnum() {
+		Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(type("circle"),
+						objectOpen,
+						key("radius"),
+						primitive("1"),
+						key("color"),
+						primitive("blue"),
+						objectClose
+				)
+		);
+	}
+
+	@Test
+	public void testDecodeShorthandObject() {
+		final Holder holder = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Holder.class),
+				events(objectOpen, key("radius"), primitive("3"), objectClose)
+		);
+		assertEquals(3.0, holder.circle.radius, 0);
+	}
+
+	@Test
+	public void testDecodeFullObject() {
+		final Holder holder = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Holder.class),
+				events(objectOpen, key("circle"), primitive("3"), key("shape"), primitive("4"), objectClose)
+		);
+		assertEquals(3.0, holder.circle.radius, 0);
+		assertEquals(4.0, ((Circle) holder.shape).radius, 0);
+	}
+
+	private static void assertEnginesAgree(final Walk.TypeInfo root, final InterfaceEvent... events) {
+		final Object grammar = Events.parse(Events.Engine.GRAMMAR, reflections, root, events(events));
+		final Object decoder = Events.parse(Events.Engine.DECODER, reflections, root, events(events));
+		assertNotNull(grammar);
+		final WalkTest.RecordingVisitor grammarEvents = new WalkTest.RecordingVisitor();
+		Walk.walk(root, grammar, grammarEvents);
+		final WalkTest.RecordingVisitor decoderEvents = new WalkTest.RecordingVisitor();
+		Walk.walk(root, decoder, decoderEvents);
+		assertEquals(grammarEvents.events, decoderEvents.events);
+	}
+
+	private static void assertEnginesReject(final Walk.TypeInfo root, final InterfaceEvent... events) {
+		for (final Events.Engine engine : Events.Engine.values()) {
+			try {
+				Events.parse(engine, reflections, root, events(events));
+				fail(engine.toString());
+			} catch (final RuntimeException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testEnginesAgree() {
+		final Walk.TypeInfo shape = Walk.TypeInfo.of(Shape.class);
+		final Walk.TypeInfo holder = Walk.TypeInfo.of(Holder.class);
+		assertEnginesAgree(shape, groupEvents());
+		assertEnginesAgree(holder, objectOpen, key("radius"), primitive("3"), objectClose);
+		assertEnginesAgree(holder,
+				objectOpen,
+				key("circle"),
+				primitive("3"),
+				key("shape"),
+				primitive("4"),
+				objectClose
+		);
+		assertEnginesAgree(shape,
+				type("circle"),
+				objectOpen,
+				key("radius"),
+				primitive("1"),
+				key("color"),
+				primitive("red"),
+				objectClose
+		);
+		assertEnginesReject(shape,
+				type("circle"),
+				objectOpen,
+				key("radius"),
+				primitive("1"),
+				key("color"),
+				primitive("blue"),
+				objectClose
+		);
+		assertEnginesReject(shape, type("group"), objectOpen, key("name"), primitive("outer"), objectClose);
+		assertEnginesReject(shape, type("circle"), objectOpen, key("nope"), primitive("1"), objectClose);
+	}
+
+	@Test
+	public void testDecoderBuildsUsedRulesOnly() {
+		final ReadEventDecoder decoder = new ReadEventDecoder(reflections, Walk.TypeInfo.of(Shape.class));
+		final Circle circle = Events.parse(decoder, events(type("circle"), primitive("2")));
+		assertEquals(2.0, circle.radius, 0);
+		// Shape, Circle, double
+		assertEquals(3, decoder.ruleCount());
+	}
+
+	/**
+	 * Tokens: {, }, [, ], key:x, type:x, anything else is a primitive.
+	 */
+	public static class TokenCursor implements InterfaceEventCursor {
+		private final String[] tokens;
+		private int index = -1;
+		private InterfaceEventKind kind;
+		private String value;
+
+		public TokenCursor(final String... tokens) {
+			this.tokens = tokens;
+		}
+
+		@Override
+		public boolean next() {
+			if (++index >= tokens.length)
+				return false;
+			final String token = tokens[index];
+			value = null;
+			if (token.equals("{"))
+				kind = InterfaceEventKind.OBJECT_OPEN;
+			else if (token.equals("}"))
+				kind = InterfaceEventKind.OBJECT_CLOSE;
+			else if (token.equals("["))
+				kind = InterfaceEventKind.ARRAY_OPEN;
+			else if (token.equals("]"))
+				kind = InterfaceEventKind.ARRAY_CLOSE;
+			else if (token.startsWith("key:")) {
+				kind = InterfaceEventKind.KEY;
+				value = token.substring(4);
+			} else if (token.startsWith("type:")) {
+				kind = InterfaceEventKind.TYPE;
+				value = token.substring(5);
+			} else {
+				kind = InterfaceEventKind.PRIMITIVE;
+				value = token;
+			}
+			return true;
+		}
+
+		@Override
+		public InterfaceEventKind kind() {
+			return kind;
+		}
+
+		@Override
+		public String stringValue() {
+			return value;
+		}
+
+		@Override
+		public Object position() {
+			return index;
+		}
+	}
+
+	@Test
+	public void testDecodeCursor() {
+		final Group group = Events.parse(reflections,
+				Walk.TypeInfo.of(Shape.class),
+				new TokenCursor("type:group",
+						"{",
+						"key:name",
+						"outer",
+						"key:weight",
+						"4",
+						"key:children",
+						"[",
+						"type:circle",
+						"2.5",
+						"]",
+						"key:tags",
+						"{",
+						"key:a",
+						"1",
+						"}",
+						"key:visible",
+						"true",
+						"}"
+				)
+		);
+		assertEquals("outer", group.name);
+		assertEquals(4, group.weight);
+		assertEquals(true, group.visible);
+		assertEquals(2.5, ((Circle) group.children.get(0)).radius, 0);
+		assertEquals(1, (int) group.tags.get("a"));
+	}
+
+	@Test
+	public void testDecodeCursorErrorPosition() {
+		try {
+			Events.parse(reflections, Walk.TypeInfo.of(Holder.class), new TokenCursor("{", "key:radius", "nope", "}"));
+			fail();
+		} catch (final InvalidEventStream e) {
+			assertEquals(2, e.position);
+		}
+	}
+
+	@Test
+	public void testDecodeIncremental() {
+		final ReadEventDecoder.Incremental<Group> incremental =
+				Events.incremental(reflections, Walk.TypeInfo.of(Shape.class));
+		final InterfaceEvent[] all = groupEvents();
+		final int split = all.length / 2;
+		incremental.feed(events(Arrays.copyOfRange(all, 0, split)).collect(Collectors.toList()));
+		assertFalse(incremental.complete());
+		incremental.feed(events(Arrays.copyOfRange(all, split, all.length)).collect(Collectors.toList()));
+		assertTrue(incremental.complete());
+		final Group group = incremental.finish();
+		assertEquals("outer", group.name);
+		assertEquals(2, group.children.size());
+	}
+
+	@Test(expected = InvalidEventStream.class)
+	public void testDecodeIncrementalUnfinished() {
+		final ReadEventDecoder.Incremental<Group> incremental =
+				Events.incremental(reflections, Walk.TypeInfo.of(Shape.class));
+		incremental.feed(new TokenCursor("type:group", "{", "key:name"));
+		incremental.finish();
+	}
+
+	@Test
+	public void testProjectWildcard() {
+		final Group group = Events.project(reflections,
+				Walk.TypeInfo.of(Shape.class),
+				InterfacePathProjection.of("/children/*/radius"),
+				events(groupEvents())
+		);
+		assertNull(group.name);
+		assertEquals(0, group.weight);
+		assertTrue(group.tags.isEmpty());
+		assertEquals(2, group.children.size());
+		assertEquals(2.5, ((Circle) group.children.get(0)).radius, 0);
+		assertEquals(1.0, ((Circle) group.children.get(1)).radius, 0);
+		assertEquals(Color.GREEN, group.children.get(1).color);
+	}
+
+	@Test
+	public void testProjectIndexAndKey() {
+		final Group group = Events.project(reflections,
+				Walk.TypeInfo.of(Shape.class),
+				InterfacePathProjection.of("/children/1", "/tags/a", "/name"),
+				events(groupEvents())
+		);
+		assertEquals("outer", group.name);
+		assertEquals(1, group.children.size());
+		assertEquals(Color.RED, group.children.get(0).color);
+		assertEquals(1, (int) group.tags.get("a"));
+	}
+
+	public static class ShapeList {
+		@Configuration
+		public List<Shape> shapes;
+	}
+
+	@Test
+	public void testParallelList() throws NoSuchFieldException {
+		final List<InterfaceEvent> all = new ArrayList<>();
+		all.add(arrayOpen);
+		for (int i = 0; i < 1000; ++i) {
+			if (i % 3 == 0)
+				all.addAll(Arrays.asList(groupEvents()));
+			else {
+				all.add(type("circle"));
+				all.add(primitive(Integer.toString(i)));
+			}
+		}
+		all.add(arrayClose);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Shape> shapes = new ParallelListParse(executor, 7, 3).parse(reflections,
+					Walk.TypeInfo.of(ShapeList.class.getField("shapes")),
+					events(all.toArray(new InterfaceEvent[0]))
+			);
+			assertEquals(1000, shapes.size());
+			for (int i = 0; i < 1000; ++i) {
+				if (i % 3 == 0)
+					assertEquals("outer", ((Group) shapes.get(i)).name);
+				else
+					assertEquals(i, ((Circle) shapes.get(i)).radius, 0);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelListElementError() throws NoSuchFieldException {
+		try {
+			new ParallelListParse(Runnable::run, 2, 1).parse(reflections,
+					Walk.TypeInfo.of(ShapeList.class.getField("shapes")),
+					events(arrayOpen,
+							type("circle"),
+							primitive("1"),
+							type("circle"),
+							primitive("2"),
+							type("circle"),
+							primitive("x"),
+							arrayClose
+					)
+			);
+			fail();
+		} catch (final InvalidElement e) {
+			assertEquals(2, e.index);
+			assertEquals("/2", e.path.toString());
+		}
+	}
+
+	@Test
+	public void testDiagnosticsCountBranches() {
+		final ParseDiagnostics diagnostics = new ParseDiagnostics();
+		final String shorthand = String.format("%s.circle", Holder.class.getName());
+		for (int i = 0; i < 2; ++i) {
+			final Holder holder = Events.parse(reflections,
+					Walk.TypeInfo.of(Holder.class),
+					events(objectOpen, key("radius"), primitive("3"), objectClose),
+					diagnostics
+			);
+			assertEquals(3.0, holder.circle.radius, 0);
+			assertTrue(diagnostics.peakBranches() > 1);
+			assertTrue(diagnostics
+					.rules()
+					.stream()
+					.anyMatch(rule -> rule.name.equals(shorthand) && rule.attempts > 0));
+			assertTrue(diagnostics.nanosByType().containsKey(Holder.class));
+			assertTrue(diagnostics.nanosByType().containsKey(Circle.class));
+			diagnostics.reset();
+			assertEquals(0, diagnostics.peakBranches());
+			assertTrue(diagnostics.rules().stream().allMatch(rule -> rule.attempts == 0));
+			assertTrue(diagnostics.nanosByType().isEmpty());
+		}
+	}
+
+	@Test
+	public void testAnalysisFindsShorthandOverlap() {
+		assertEquals(0, GrammarAnalysis.ambiguities(reflections, Walk.TypeInfo.of(Shape.class)).size());
+		final List<String> found = GrammarAnalysis.ambiguities(reflections, Walk.TypeInfo.of(Holder.class));
+		assertEquals(1, found.size());
+		assertTrue(found.get(0).contains("[circle]"));
+	}
+
+	@Test
+	public void testStreamElements() {
+		final List<InterfaceEvent> all = new ArrayList<>();
+		all.add(arrayOpen);
+		all.addAll(Arrays.asList(groupEvents()));
+		all.add(type("circle"));
+		all.add(primitive("3"));
+		all.add(arrayClose);
+		final ElementIterator<Shape> iterator =
+				Events.iterator(reflections, Walk.TypeInfo.of(Shape.class), events(all.toArray(new InterfaceEvent[0])));
+		assertEquals("outer", ((Group) iterator.next()).name);
+		assertEquals(0, iterator.index());
+		assertEquals(3.0, ((Circle) iterator.next()).radius, 0);
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void testStreamMapValues() {
+		final List<Integer> values = Events.<Integer>stream(reflections,
+				Walk.TypeInfo.of(Integer.class),
+				events(objectOpen, key("a"), primitive("1"), key("b"), primitive("2"), objectClose)
+		).collect(Collectors.toList());
+		assertEquals(Arrays.asList(1, 2), values);
+	}
+
+	@Test
+	public void testStreamElementError() {
+		final ElementIterator<Shape> iterator = Events.iterator(reflections,
+				Walk.TypeInfo.of(Shape.class),
+				events(arrayOpen, type("circle"), primitive("1"), type("circle"), primitive("x"), arrayClose)
+		);
+		iterator.next();
+		try {
+			iterator.next();
+			fail();
+		} catch (final InvalidElement e) {
+			assertEquals(1, e.index);
+			assertEquals("/1", e.path.toString());
+		}
+	}
+
+	@Configuration(name = "catalog")
+	public static class Catalog {
+		@Configuration
+		public String name;
+
+		@Configuration(lazy = true)
+		public List<Shape> shapes;
+
+		@Configuration(lazy = true)
+		public Map<String, Integer> counts;
+	}
+
+	@Test
+	public void testLazyCollections() {
+		final Catalog catalog = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Catalog.class),
+				events(objectOpen,
+						key("shapes"),
+						arrayOpen,
+						type("circle"),
+						primitive("1"),
+						groupEvents()[0],
+						objectOpen,
+						key("name"),
+						primitive("inner"),
+						key("weight"),
+						primitive("2"),
+						key("visible"),
+						primitive("false"),
+						key("children"),
+						arrayOpen,
+						arrayClose,
+						key("tags"),
+						objectOpen,
+						objectClose,
+						objectClose,
+						arrayClose,
+						key("name"),
+						primitive("catalog"),
+						key("counts"),
+						objectOpen,
+						key("a"),
+						primitive("1"),
+						objectClose,
+						objectClose
+				)
+		);
+		assertEquals("catalog", catalog.name);
+		final LazyList<Shape> shapes = (LazyList<Shape>) catalog.shapes;
+		assertFalse(shapes.materialized());
+		assertEquals(2, shapes.size());
+		assertTrue(shapes.materialized());
+		assertEquals(1.0, ((Circle) shapes.get(0)).radius, 0);
+		assertEquals("inner", ((Group) shapes.get(1)).name);
+		assertFalse(((LazyMap<Integer>) catalog.counts).materialized());
+		assertEquals((Integer) 1, catalog.counts.get("a"));
+	}
+
+	@Configuration(name = "nestedlazy")
+	public static class NestedLazy {
+		@Configuration(lazy = true)
+		public List<List<Integer>> rows;
+
+		@Configuration(lazy = true)
+		public Map<String, List<Integer>> groups;
+	}
+
+	@Test
+	public void testLazyNotNested() {
+		final NestedLazy nested = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(NestedLazy.class),
+				events(objectOpen,
+						key("rows"),
+						arrayOpen,
+						arrayOpen,
+						primitive("1"),
+						primitive("2"),
+						arrayClose,
+						arrayClose,
+						key("groups"),
+						objectOpen,
+						key("a"),
+						arrayOpen,
+						primitive("3"),
+						arrayClose,
+						objectClose,
+						objectClose
+				)
+		);
+		assertTrue(nested.rows instanceof LazyList);
+		assertTrue(nested.groups instanceof LazyMap);
+		assertFalse(nested.rows.get(0) instanceof LazyList);
+		assertEquals(Arrays.asList(1, 2), nested.rows.get(0));
+		assertFalse(nested.groups.get("a") instanceof LazyList);
+		assertEquals(Arrays.asList(3), nested.groups.get("a"));
+	}
+
+	@Test
+	public void testLazyErrorOnAccess() {
+		final Catalog catalog = Events.parse(Events.Engine.DECODER,
+				reflections,
+				Walk.TypeInfo.of(Catalog.class),
+				events(objectOpen,
+						key("name"),
+						primitive("catalog"),
+						key("shapes"),
+						arrayOpen,
+						type("circle"),
+						primitive("x"),
+						arrayClose,
+						key("counts"),
+						objectOpen,
+						objectClose,
+						objectClose
+				)
+		);
+		try {
+			catalog.shapes.size();
+			fail();
+		} catch (final InvalidEventStream e) {
+			assertEquals("/shapes/0", e.path.toString());
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.zarbosoft.interface1;
+
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class GrammarCacheTest {
+	private final Reflections reflections = new Reflections("com.zarbosoft.interface1");
+	private final Walk.TypeInfo stringType = new Walk.TypeInfo(String.class);
+	private final Walk.TypeInfo integerType = new Walk.TypeInfo(Integer.class);
+
+	@Test
+	public void testHit() {
+		final AtomicInteger builds = new AtomicInteger();
+		final GrammarCache<Object> cache = new GrammarCache<>(4, (r, t) -> {
+			builds.incrementAndGet();
+			return new Object();
+		});
+		final Object first = cache.get(reflections, stringType);
+		assertSame(first, cache.get(reflections, stringType));
+		assertEquals(1, builds.get());
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() {
+		final GrammarCache<Object> cache = new GrammarCache<>(1, (r, t) -> new Object());
+		final Object first = cache.get(reflections, stringType);
+		cache.get(reflections, integerType);
+		assertEquals(1, cache.size());
+		assertNotSame(first, cache.get(reflections, stringType));
+	}
+
+	@Test
+	public void testInvalidate() {
+		final GrammarCache<Object> cache = new GrammarCache<>(4, (r, t) -> new Object());
+		final Object first = cache.get(reflections, stringType);
+		cache.get(reflections, integerType);
+		cache.invalidate(reflections, stringType);
+		assertEquals(1, cache.size());
+		assertNotSame(first, cache.get(reflections, stringType));
+		cache.invalidate(reflections);
+		assertEquals(0, cache.size());
+	}
+}
@@ -1,13 +1,19 @@
 package com.zarbosoft.interface1;
 
+import com.zarbosoft.interface1.events.InterfaceEventKind;
 import com.zarbosoft.rendaw.common.Pair;
 import org.junit.Test;
 import org.reflections.Reflections;
 
 import java.lang.reflect.Field;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class WalkTest {
 	public static class BlankVisitor implements Walk.Visitor<String> {
@@ -91,4 +97,360 @@ public class WalkTest {
 				}
 		));
 	}
+
+	@Test
+	public void testTypeInfoEquality() {
+		final Walk.TypeInfo a = new Walk.TypeInfo(List.class, new Walk.TypeInfo(String.class));
+		final Walk.TypeInfo b = new Walk.TypeInfo(List.class, new Walk.TypeInfo(String.class));
+		assertNotSame(a, b);
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertSame(Walk.TypeInfo.of(List.class, Walk.TypeInfo.of(String.class)), Walk.TypeInfo.of(a.type, a.parameters));
+	}
+
+	public static class Fielded {
+		@Configuration
+		public List<String> strings;
+	}
+
+	@Test
+	public void testTypeInfoFieldInterned() throws NoSuchFieldException {
+		final Walk.TypeInfo a = Walk.TypeInfo.of(Fielded.class.getField("strings"));
+		assertSame(a, Walk.TypeInfo.of(Fielded.class.getField("strings")));
+		assertEquals(new Walk.TypeInfo(Fielded.class.getField("strings")), a);
+		assertNotSame(Walk.TypeInfo.of(String.class), a.parameters[0]);
+	}
+
+	public static class RecordingVisitor implements Walk.ObjectVisitor {
+		public final List<String> events = new ArrayList<>();
+
+		@Override
+		public void visitString(final String value) {
+			events.add("string " + value);
+		}
+
+		@Override
+		public void visitInteger(final Integer value) {
+			events.add("integer " + value);
+		}
+
+		@Override
+		public void visitDouble(final Double value) {
+			events.add("double " + value);
+		}
+
+		@Override
+		public void visitBoolean(final Boolean value) {
+			events.add("boolean " + value);
+		}
+
+		@Override
+		public void visitEnum(final Enum value) {
+			events.add("enum " + value);
+		}
+
+		@Override
+		public void visitListStart(final List value) {
+			events.add("list start");
+		}
+
+		@Override
+		public void visitListEnd(final List value) {
+			events.add("list end");
+		}
+
+		@Override
+		public void visitSetStart(final Set value) {
+			events.add("set start");
+		}
+
+		@Override
+		public void visitSetEnd(final Set value) {
+			events.add("set end");
+		}
+
+		@Override
+		public void visitMapStart(final Map value) {
+			events.add("map start");
+		}
+
+		@Override
+		public void visitKeyBegin(final String key) {
+			events.add("key begin " + key);
+		}
+
+		@Override
+		public void visitKeyEnd(final String key) {
+			events.add("key end " + key);
+		}
+
+		@Override
+		public void visitMapEnd(final Map value) {
+			events.add("map end");
+		}
+
+		@Override
+		public boolean visitAbstractBegin(final Class<?> klass, final Object value) {
+			events.add("abstract begin " + klass.getSimpleName());
+			return true;
+		}
+
+		@Override
+		public void visitAbstractEnd(final Class<?> klass, final Object value) {
+			events.add("abstract end " + klass.getSimpleName());
+		}
+
+		@Override
+		public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+			events.add("concrete begin " + klass.getSimpleName());
+			return true;
+		}
+
+		@Override
+		public void visitFieldBegin(final Field field, final Object value) {
+			events.add("field begin " + field.getName());
+		}
+
+		@Override
+		public void visitFieldEnd(final Field field, final Object value) {
+			events.add("field end " + field.getName());
+		}
+
+		@Override
+		public void visitConcreteEnd(final Class<?> klass, final Object value) {
+			events.add("concrete end " + klass.getSimpleName());
+		}
+	}
+
+	public enum Color {
+		@Configuration(name = "red")
+		RED,
+		@Configuration
+		GREEN
+	}
+
+	@Configuration
+	public abstract static class Shape {
+		@Configuration(optional = true)
+		public Color color = Color.GREEN;
+	}
+
+	@Configuration(name = "circle")
+	public static class Circle extends Shape {
+		@Configuration
+		public double radius;
+	}
+
+	@Configuration(name = "group")
+	public static class Group extends Shape {
+		@Configuration
+		public String name;
+
+		@Configuration
+		public int weight;
+
+		@Configuration
+		public boolean visible;
+
+		@Configuration
+		public List<Shape> children = new ArrayList<>();
+
+		@Configuration
+		public Map<String, Integer> tags = new TreeMap<>();
+	}
+
+	public static Group sampleGroup() {
+		final Group inner = new Group();
+		inner.name = "inner";
+		final Circle circle = new Circle();
+		circle.radius = 2.5;
+		circle.color = Color.RED;
+		inner.children.add(circle);
+		final Group out = new Group();
+		out.name = "outer";
+		out.weight = 4;
+		out.visible = true;
+		out.children.add(inner);
+		out.children.add(new Circle());
+		out.tags.put("a", 1);
+		out.tags.put("b", 2);
+		return out;
+	}
+
+	@Test
+	public void testCompiledMatchesWalk() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final RecordingVisitor expected = new RecordingVisitor();
+		Walk.walk(root, sampleGroup(), expected);
+		final RecordingVisitor got = new RecordingVisitor();
+		Walk.walkCompiled(root, sampleGroup(), got);
+		assertEquals(expected.events, got.events);
+		assertEquals("abstract begin Shape", got.events.get(0));
+		assertEquals("concrete begin Group", got.events.get(1));
+	}
+
+	public static class UnboxedVisitor extends RecordingVisitor {
+		@Override
+		public void visitInt(final int value) {
+			events.add("int " + value);
+		}
+
+		@Override
+		public void visitDouble(final double value) {
+			events.add("double " + value);
+		}
+
+		@Override
+		public void visitBoolean(final boolean value) {
+			events.add("bool " + value);
+		}
+
+		@Override
+		public boolean wantsFieldValues() {
+			return false;
+		}
+	}
+
+	@Configuration
+	public enum Clashing {
+		@Configuration(name = "same")
+		A,
+		@Configuration(name = "same")
+		B
+	}
+
+	@Test(expected = AssertionError.class)
+	public void testDuplicateEnumNames() {
+		Walk.ClassInfo.get(Clashing.class);
+	}
+
+	@Test
+	public void testCompiledGeneratesClasses() {
+		final Walk.ClassInfo info = Walk.ClassInfo.get(Group.class);
+		final WalkCompiler.Writer[] writers = new WalkCompiler.Writer[info.fields.size()];
+		for (int i = 0; i < writers.length; ++i)
+			writers[i] = WalkCompiler.compile(info.fields.get(i).type);
+		final WalkCompiler.Writer generated = WalkGenerator.generate(info, writers);
+		assertNotNull(generated);
+		final RecordingVisitor expected = new RecordingVisitor();
+		Walk.walk(Walk.TypeInfo.of(Group.class), sampleGroup(), expected);
+		final RecordingVisitor got = new RecordingVisitor();
+		generated.walk(sampleGroup(), got);
+		assertEquals(expected.events, got.events);
+	}
+
+	@Configuration
+	public static class Accessed {
+		@Configuration
+		public int count;
+
+		public int count() {
+			return count + 1;
+		}
+	}
+
+	@Configuration
+	static class Hidden {
+		@Configuration
+		public String name;
+	}
+
+	@Test
+	public void testCompiledAccessors() {
+		final Accessed accessed = new Accessed();
+		accessed.count = 4;
+		final RecordingVisitor expected = new RecordingVisitor();
+		Walk.walk(Walk.TypeInfo.of(Accessed.class), accessed, expected);
+		final RecordingVisitor got = new RecordingVisitor();
+		Walk.walkCompiled(Walk.TypeInfo.of(Accessed.class), accessed, got);
+		assertEquals(expected.events, got.events);
+		assertTrue(got.events.contains("integer 5"));
+
+		final Hidden hidden = new Hidden();
+		hidden.name = "x";
+		final RecordingVisitor expectedHidden = new RecordingVisitor();
+		Walk.walk(Walk.TypeInfo.of(Hidden.class), hidden, expectedHidden);
+		final RecordingVisitor gotHidden = new RecordingVisitor();
+		Walk.walkCompiled(Walk.TypeInfo.of(Hidden.class), hidden, gotHidden);
+		assertEquals(expectedHidden.events, gotHidden.events);
+	}
+
+	@Test
+	public void testUnboxedFields() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final UnboxedVisitor expected = new UnboxedVisitor();
+		Walk.walk(root, sampleGroup(), expected);
+		final UnboxedVisitor got = new UnboxedVisitor();
+		Walk.walkCompiled(root, sampleGroup(), got);
+		assertEquals(expected.events, got.events);
+		assertTrue(got.events.contains("int " + sampleGroup().weight));
+		assertTrue(got.events.contains("bool " + sampleGroup().visible));
+		// Boxed map values still use the boxed callbacks
+		assertTrue(got.events.stream().anyMatch(e -> e.startsWith("integer ")));
+	}
+
+	@Test
+	public void testCursorRoundTrip() {
+		final Reflections reflections = new Reflections("com.zarbosoft.interface1");
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final WalkCursor cursor = new WalkCursor(root, sampleGroup());
+		assertTrue(cursor.next());
+		assertEquals(InterfaceEventKind.TYPE, cursor.kind());
+		assertEquals("group", cursor.stringValue());
+		assertTrue(cursor.next());
+		assertEquals(InterfaceEventKind.OBJECT_OPEN, cursor.kind());
+		final Group decoded = Events.parse(reflections, root, new WalkCursor(root, sampleGroup()));
+		assertEquals("outer", decoded.name);
+		assertEquals(4, decoded.weight);
+		assertEquals(Color.RED, ((Group) decoded.children.get(0)).children.get(0).color);
+		assertEquals(2, (int) decoded.tags.get("b"));
+		final Group parsed = Events.parse(Events.Engine.DECODER,
+				reflections,
+				root,
+				new WalkCursor(root, sampleGroup()).events()
+		);
+		assertEquals(2.5, ((Circle) ((Group) parsed.children.get(0)).children.get(0)).radius, 0);
+	}
+
+	@Test
+	public void testParallelMatchesWalk() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final Group group = sampleGroup();
+		for (int i = 0; i < 5000; ++i) {
+			final Circle circle = new Circle();
+			circle.radius = i;
+			group.children.add(circle);
+			group.tags.put("tag" + i, i);
+		}
+		final RecordingVisitor expected = new RecordingVisitor();
+		Walk.walk(root, group, expected);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (final int threshold : new int[] {1, 7, 100}) {
+				final RecordingVisitor got = new RecordingVisitor();
+				new ParallelWalk(pool, threshold).walk(root, group, got);
+				assertEquals(expected.events, got.events);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelSkipsRefused() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final RecordingVisitor expected = new NoCirclesVisitor();
+		Walk.walk(root, sampleGroup(), expected);
+		final RecordingVisitor got = new NoCirclesVisitor();
+		new ParallelWalk(ForkJoinPool.commonPool(), 1).walk(root, sampleGroup(), got);
+		assertEquals(expected.events, got.events);
+	}
+
+	public static class NoCirclesVisitor extends RecordingVisitor {
+		@Override
+		public boolean visitConcreteBegin(final Class<?> klass, final Object value) {
+			super.visitConcreteBegin(klass, value);
+			return klass != Circle.class;
+		}
+	}
 }
@@ -0,0 +1,92 @@
+package com.zarbosoft.interface1.binary;
+
+import com.zarbosoft.interface1.Events;
+import com.zarbosoft.interface1.EventsTest;
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.WalkTest;
+import com.zarbosoft.interface1.events.InvalidEventStream;
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static com.zarbosoft.interface1.WalkTest.Circle;
+import static com.zarbosoft.interface1.WalkTest.Shape;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryTest {
+	private static final Reflections reflections = new Reflections("com.zarbosoft.interface1");
+
+	private static void assertSameWalk(final Walk.TypeInfo root, final Object expected, final Object got) {
+		final WalkTest.RecordingVisitor expectedEvents = new WalkTest.RecordingVisitor();
+		Walk.walk(root, expected, expectedEvents);
+		final WalkTest.RecordingVisitor gotEvents = new WalkTest.RecordingVisitor();
+		Walk.walk(root, got, gotEvents);
+		assertEquals(expectedEvents.events, gotEvents.events);
+	}
+
+	@Test
+	public void testBufferRoundTrip() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		BinaryWriter.write(reflections, root, WalkTest.sampleGroup(), buffer);
+		buffer.flip();
+		final Shape got = BinaryReader.read(reflections, root, buffer);
+		assertSameWalk(root, WalkTest.sampleGroup(), got);
+	}
+
+	@Test
+	public void testChannelRoundTripSmallBuffers() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(Shape.class);
+		final long fingerprint = BinaryFormat.fingerprint(reflections, root);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BinaryWriter writer = new BinaryWriter(Channels.newChannel(bytes), fingerprint, BinaryFormat.headerSize);
+		Walk.walk(root, WalkTest.sampleGroup(), writer);
+		writer.flush();
+		final Shape got = Events.parse(reflections,
+				root,
+				new BinaryReader(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())),
+						fingerprint,
+						BinaryFormat.headerSize
+				)
+		);
+		assertSameWalk(root, WalkTest.sampleGroup(), got);
+	}
+
+	@Test
+	public void testFingerprintMismatch() {
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		BinaryWriter.write(reflections, Walk.TypeInfo.of(Shape.class), WalkTest.sampleGroup(), buffer);
+		buffer.flip();
+		try {
+			BinaryReader.read(reflections, Walk.TypeInfo.of(Circle.class), buffer);
+			fail();
+		} catch (final InvalidEventStream e) {
+			assertTrue(e.getMessage().contains("different model"));
+		}
+	}
+
+	@Test
+	public void testNullOptionalFields() {
+		final Walk.TypeInfo root = Walk.TypeInfo.of(EventsTest.Holder.class);
+		final EventsTest.Holder holder = new EventsTest.Holder();
+		holder.circle = new Circle();
+		holder.circle.radius = 2;
+		holder.circle.color = null;
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		BinaryWriter.write(reflections, root, holder, buffer);
+		buffer.flip();
+		final EventsTest.Holder got = BinaryReader.read(reflections, root, buffer);
+		assertNull(got.shape);
+		assertEquals(2.0, got.circle.radius, 0.0);
+
+		// Omitted, so the field keeps its default
+		assertEquals(WalkTest.Color.GREEN, got.circle.color);
+	}
+}
@@ -0,0 +1,129 @@
+package com.zarbosoft.interface1.binary;
+
+import com.zarbosoft.interface1.Walk;
+import com.zarbosoft.interface1.WalkTest;
+import com.zarbosoft.interface1.events.InvalidElement;
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.zarbosoft.interface1.WalkTest.Circle;
+import static com.zarbosoft.interface1.WalkTest.Group;
+import static com.zarbosoft.interface1.WalkTest.Shape;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IndexedFileTest {
+	private static final Reflections reflections = new Reflections("com.zarbosoft.interface1");
+
+	private static Circle circle(final double radius) {
+		final Circle out = new Circle();
+		out.radius = radius;
+		return out;
+	}
+
+	@Test
+	public void testList() throws Exception {
+		final Walk.TypeInfo root = new Walk.TypeInfo(List.class, Walk.TypeInfo.of(Shape.class));
+		final Path path = Files.createTempFile("interface", ".ifx");
+		try {
+			IndexedFile.writeList(reflections,
+					root,
+					Arrays.asList(circle(1), WalkTest.sampleGroup(), circle(3)),
+					path
+			);
+			try (final IndexedFile<Shape> file = IndexedFile.open(reflections, root, path)) {
+				assertEquals(3, file.size());
+				assertEquals(3.0, ((Circle) file.get(2)).radius, 0.0);
+				assertEquals("outer", ((Group) file.get(1)).name);
+				assertEquals(Arrays.asList(1.0, 3.0),
+						file
+								.stream()
+								.filter(s -> s instanceof Circle)
+								.map(s -> ((Circle) s).radius)
+								.collect(Collectors.toList())
+				);
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testNullOptionalField() throws Exception {
+		final Walk.TypeInfo root = new Walk.TypeInfo(List.class, Walk.TypeInfo.of(Shape.class));
+		final Circle uncolored = circle(2);
+		uncolored.color = null;
+		final Path path = Files.createTempFile("interface", ".ifx");
+		try {
+			IndexedFile.writeList(reflections, root, Arrays.asList(circle(1), uncolored), path);
+			try (final IndexedFile<Shape> file = IndexedFile.open(reflections, root, path)) {
+				assertEquals(2.0, ((Circle) file.get(1)).radius, 0.0);
+				assertEquals(WalkTest.Color.GREEN, file.get(1).color);
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testMap() throws Exception {
+		final Walk.TypeInfo root =
+				new Walk.TypeInfo(Map.class, Walk.TypeInfo.of(String.class), Walk.TypeInfo.of(Shape.class));
+		final Map<String, Shape> entries = new LinkedHashMap<>();
+		entries.put("small", circle(1));
+		entries.put("group", WalkTest.sampleGroup());
+		final Path path = Files.createTempFile("interface", ".ifx");
+		try {
+			IndexedFile.writeMap(reflections, root, entries, path);
+			try (final IndexedFile<Shape> file = IndexedFile.open(reflections, root, path)) {
+				assertEquals(Arrays.asList("small", "group"), file.keys());
+				assertEquals(4, ((Group) file.get("group")).weight);
+				assertNull(file.get("missing"));
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testElementError() throws Exception {
+		final Walk.TypeInfo root = new Walk.TypeInfo(List.class, Walk.TypeInfo.of(Shape.class));
+		final Path path = Files.createTempFile("interface", ".ifx");
+		try {
+			IndexedFile.writeList(reflections, root, Arrays.asList(circle(1), circle(2), circle(3)), path);
+
+			// Each element has its own name table; rename the type in the last one
+			final byte[] data = Files.readAllBytes(path);
+			final byte[] name = "circle".getBytes(StandardCharsets.UTF_8);
+			int at = -1;
+			for (int i = 0; i + name.length <= data.length; ++i) {
+				if (Arrays.equals(Arrays.copyOfRange(data, i, i + name.length), name))
+					at = i;
+			}
+			data[at + name.length - 1] = 'x';
+			Files.write(path, data);
+
+			try (final IndexedFile<Shape> file = IndexedFile.open(reflections, root, path)) {
+				assertEquals(2.0, ((Circle) file.get(1)).radius, 0.0);
+				try {
+					file.get(2);
+					fail();
+				} catch (final InvalidElement e) {
+					assertEquals(2, e.index);
+					assertNull(e.key);
+					assertTrue(e.path.toString().startsWith("/2"));
+				}
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.zarbosoft.interface1.path;
+
+import com.zarbosoft.interface1.EventsTest;
+import com.zarbosoft.interface1.events.InterfaceEvent;
+import org.junit.Test;
+
+import static com.zarbosoft.interface1.EventsTest.*;
+import static org.junit.Assert.assertEquals;
+
+public class InterfacePathTrackerTest {
+	private static void check(final InterfaceEvent... events) {
+		InterfacePath path = new InterfaceRootPath("root");
+		final InterfacePathTracker tracker = new InterfacePathTracker("root");
+		for (final InterfaceEvent event : events) {
+			final InterfacePath pushed = path.push(event);
+			if (pushed != null)
+				path = pushed;
+			tracker.push(event);
+			assertEquals(path.toString(), tracker.toString());
+			assertEquals(path.toString(), tracker.snapshot().toString());
+		}
+	}
+
+	@Test
+	public void testMatchesPathChain() {
+		check(EventsTest.groupEvents());
+	}
+
+	@Test
+	public void testNestedArrays() {
+		check(arrayOpen,
+				primitive("a"),
+				arrayOpen,
+				type("x"),
+				primitive("b"),
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				arrayOpen,
+				primitive("deep"),
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				arrayClose,
+				type("y"),
+				objectOpen,
+				key("k"),
+				primitive("c"),
+				objectClose,
+				arrayClose,
+				primitive("d"),
+				arrayClose
+		);
+	}
+}